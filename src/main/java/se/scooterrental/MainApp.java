@@ -22,15 +22,23 @@ import org.kordamp.ikonli.javafx.FontIcon;
 import se.scooterrental.model.Member;
 import se.scooterrental.persistence.ConfigHandler; // Importera ConfigHandler
 import se.scooterrental.persistence.DataHandler;
+import se.scooterrental.service.DashboardStats;
+import se.scooterrental.service.DomainEventBus;
 import se.scooterrental.service.Inventory;
+import se.scooterrental.service.MemberLookupService;
 import se.scooterrental.service.MemberRegistry;
 import se.scooterrental.service.MembershipService;
+import se.scooterrental.service.RentalCostEngine;
 import se.scooterrental.service.RentalService;
+import se.scooterrental.service.StartupLoader;
 import se.scooterrental.ui.views.*;
 import se.scooterrental.util.AutosaveThread;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class MainApp extends Application {
 
@@ -39,20 +47,36 @@ public class MainApp extends Application {
     private Scene mainScene; // Håller referens för att byta tema
 
     private MemberRegistry memberRegistry;
+    private MemberLookupService memberLookup;
     private Inventory inventory;
     private RentalService rentalService;
     private MembershipService membershipService;
+    private DashboardStats dashboardStats;
+    private DomainEventBus eventBus;
+    private RentalCostEngine costEngine;
     private AutosaveThread autosaveThread;
 
     private HBox autosaveIndicator;
 
+    // Byggda vyer, återanvänds mellan inloggningar. Alla medlemmar delar en ItemView som binds om.
+    private final Map<String, BaseView> viewCache = new HashMap<>();
+    private BaseView visibleView;
+
     @Override
     public void init() throws Exception {
         DataHandler dataHandler = new DataHandler();
-        memberRegistry = new MemberRegistry();
-        inventory = new Inventory();
+        dashboardStats = new DashboardStats();
+        eventBus = new DomainEventBus();
+        // De tre datafilerna läses och indexeras parallellt
+        StartupLoader.Services services = StartupLoader.load(dashboardStats, eventBus);
+        memberRegistry = services.getMemberRegistry();
+        inventory = services.getInventory();
+        rentalService = services.getRentalService();
         membershipService = new MembershipService(memberRegistry);
-        rentalService = new RentalService(memberRegistry, inventory);
+        memberLookup = new MemberLookupService(memberRegistry, eventBus);
+
+        costEngine = new RentalCostEngine(rentalService, inventory, eventBus);
+        costEngine.start();
 
         autosaveThread = new AutosaveThread(memberRegistry, inventory, rentalService);
         autosaveThread.start();
@@ -113,41 +137,23 @@ public class MainApp extends Application {
         tabPane.setSide(Side.LEFT);
         tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
 
-        // 1. Dashboard
-        DashboardView dashboardView = new DashboardView(rentalService, inventory, memberRegistry);
-        Tab dashTab = dashboardView.getTab();
-        configureTab(dashTab, "antf-dashboard", "Översikt");
-
-        // 2. ItemView (Lager)
-        ItemView itemView = new ItemView(inventory, rentalService, isAdmin, currentMember);
-        Tab itemsTab = itemView.getTab();
-        configureTab(itemsTab, "maki2-snowmobile-11", "Utrustning");
-
-        // 3. Admin Specifika Vyer
+        // Flikarna skapas tomma; vyn byggs först när fliken väljs och återanvänds vid nästa inloggning
         if (isAdmin) {
-            tabPane.getTabs().addAll(dashTab, itemsTab);
-
-            // Medlemmar
-            MemberView memberView = new MemberView(memberRegistry);
-            Tab membersTab = memberView.getTab();
-            configureTab(membersTab, "antf-idcard", "Medlemmar");
-
-            // Kassa (RentalView)
-            RentalView rentalView = new RentalView(rentalService, memberRegistry, inventory);
-            Tab rentalsTab = rentalView.getTab();
-            configureTab(rentalsTab, "antf-shopping", "Kassa & Bokning");
-
-            tabPane.getTabs().addAll(membersTab, rentalsTab);
-
-            // Inställningar
-            SettingsView settingsView = new SettingsView(this::toggleTheme);
-            Tab settingsTab = settingsView.getTab();
-            configureTab(settingsTab, "antf-setting", "Inställningar");
-
-            tabPane.getTabs().add(settingsTab);
-
+            tabPane.getTabs().add(createLazyTab("dashboard", "antf-dashboard", "Översikt",
+                    () -> new DashboardView(rentalService, inventory, memberRegistry, dashboardStats, costEngine, eventBus)));
+            tabPane.getTabs().add(createLazyTab("items:admin", "maki2-snowmobile-11", "Utrustning",
+                    () -> new ItemView(inventory, rentalService, true, null, eventBus)));
+            tabPane.getTabs().add(createLazyTab("members", "antf-idcard", "Medlemmar",
+                    () -> new MemberView(memberRegistry, eventBus)));
+            tabPane.getTabs().add(createLazyTab("rentals", "antf-shopping", "Kassa & Bokning",
+                    () -> new RentalView(rentalService, memberRegistry, memberLookup, inventory, costEngine, eventBus)));
+            tabPane.getTabs().add(createLazyTab("settings", "antf-setting", "Inställningar",
+                    () -> new SettingsView(this::toggleTheme, memberRegistry, inventory)));
         } else {
-            tabPane.getTabs().add(itemsTab);
+            tabPane.getTabs().add(createLazyTab("items:member", "maki2-snowmobile-11", "Utrustning",
+                    () -> new ItemView(inventory, rentalService, false, currentMember, eventBus)));
+            BaseView memberItems = viewCache.get("items:member");
+            if (memberItems != null) ((ItemView) memberItems).setCurrentMember(currentMember);
         }
 
         mainLayout = new BorderPane();
@@ -195,7 +201,14 @@ public class MainApp extends Application {
         topBar.getStyleClass().add("top-bar");
 
         Button logoutBtn = new Button("Logga ut");
-        logoutBtn.setOnAction(e -> showLoginScreen());
+        logoutBtn.setOnAction(e -> {
+            // Pausa den synliga vyn; vyerna ligger kvar i cachen till nästa inloggning
+            if (visibleView != null) {
+                visibleView.onHidden();
+                visibleView = null;
+            }
+            showLoginScreen();
+        });
         logoutBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: #6B7280; -fx-border-color: #E5E7EB; -fx-border-width: 1; -fx-cursor: hand;");
 
         topBar.getChildren().add(logoutBtn);
@@ -228,6 +241,31 @@ public class MainApp extends Application {
         }
     }
 
+    /**
+     * Skapar en flik vars vy byggs vid första valet och sedan cachas. Vyn får onShown/onHidden
+     * när fliken väljs respektive lämnas, så att dolda vyer inte lyssnar eller tickar.
+     */
+    private Tab createLazyTab(String cacheKey, String iconCode, String tooltip, Supplier<BaseView> factory) {
+        Tab tab = new Tab();
+        tab.setClosable(false);
+        configureTab(tab, iconCode, tooltip);
+        tab.setOnSelectionChanged(e -> {
+            if (tab.isSelected()) {
+                BaseView view = viewCache.computeIfAbsent(cacheKey, key -> factory.get());
+                if (tab.getContent() == null) {
+                    tab.setContent(view.getTab().getContent());
+                }
+                visibleView = view;
+                view.onShown();
+            } else {
+                BaseView view = viewCache.get(cacheKey);
+                if (view != null) view.onHidden();
+                if (visibleView == view) visibleView = null;
+            }
+        });
+        return tab;
+    }
+
     private void configureTab(Tab tab, String iconCode, String tooltip) {
         FontIcon icon = new FontIcon(iconCode);
         icon.setIconSize(24);
@@ -254,6 +292,9 @@ public class MainApp extends Application {
     @Override
     public void stop() {
         if (autosaveThread != null) autosaveThread.stopThread();
+        if (costEngine != null) costEngine.stop();
+        // Skriv det som ligger kvar i write-behind-kön innan JVM:en avslutas
+        DataHandler.flushPendingWrites();
     }
 
     public static void main(String[] args) {
@@ -28,19 +28,41 @@ public abstract class Item {
 
     // Setters
     public void setName(String name) { this.name = name; }
-    public void setAvailable(boolean isAvailable) { this.isAvailable = isAvailable; } // FIXAT: Enhetligt namn
-    public void setIsAvailable(boolean isAvailable) { this.isAvailable = isAvailable; } // Behåll för bakåtkompatibilitet om json kräver
+    // Tillgänglighet och räknare ändras under itemets monitor, så att copy() ser dem tillsammans
+    public synchronized void setAvailable(boolean isAvailable) { this.isAvailable = isAvailable; } // FIXAT: Enhetligt namn
+    public synchronized void setIsAvailable(boolean isAvailable) { this.isAvailable = isAvailable; } // Behåll för bakåtkompatibilitet om json kräver
     public void setCurrentRentalPrice(double currentRentalPrice) { this.currentRentalPrice = currentRentalPrice; }
 
+    /**
+     * Sätter räknaren direkt. Används vid inläsning av sparade items.
+     */
+    public synchronized void setRentalCount(int rentalCount) {
+        this.rentalCount = rentalCount;
+    }
+
     /**
      * Ökar räknaren för hur många gånger denna hyrts ut.
      */
-    public void incrementRentalCount() {
+    public synchronized void incrementRentalCount() {
         this.rentalCount++;
     }
 
     public abstract String getUniqueInfo();
 
+    /**
+     * Fristående kopia av itemet, t.ex. för att spara det medan originalet fortsätter ändras.
+     * Tas under itemets monitor; övriga fält ändras under lagrets monitor, som anroparen håller.
+     */
+    public abstract Item copy();
+
+    /**
+     * För över tillgänglighet och räknare till en kopia. Anropas under itemets monitor.
+     */
+    protected void copyStateTo(Item copy) {
+        copy.isAvailable = isAvailable;
+        copy.rentalCount = rentalCount;
+    }
+
     @Override
     public String toString() {
         return String.format("ID: %s, Namn: %s, Pris: %.2f kr/h", itemId, name, currentRentalPrice);
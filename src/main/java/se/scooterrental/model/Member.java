@@ -41,6 +41,21 @@ public class Member {
         this.rentalHistory = new ArrayList<>();
     }
 
+    /**
+     * Konstruktor för inläsning av sparade medlemmar. Ingen validering, så att äldre
+     * poster som inte klarar dagens regler fortfarande kan läsas in.
+     */
+    public Member(String memberId, String firstName, String lastName, String phone, String email,
+                  MemberStatus status, List<String> rentalHistory) {
+        this.memberId = memberId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.phone = phone;
+        this.email = email;
+        this.status = status;
+        this.rentalHistory = rentalHistory != null ? rentalHistory : new ArrayList<>();
+    }
+
     // --- Getters ---
 
     public String getMemberId() { return memberId; }
@@ -50,7 +65,10 @@ public class Member {
     public String getEmail() { return email; }
     public MemberStatus getStatus() { return status; }
 
-    public List<String> getRentalHistory() {
+    /**
+     * Kopia av historiken. Listan ändras under medlemmens monitor, så kopian tas under samma lås.
+     */
+    public synchronized List<String> getRentalHistory() {
         return new ArrayList<>(this.rentalHistory);
     }
 
@@ -90,10 +108,32 @@ public class Member {
         this.status = status;
     }
 
-    public void addRentalToHistory(String rentalRef) {
+    public synchronized void addRentalToHistory(String rentalRef) {
         this.rentalHistory.add(rentalRef);
     }
 
+    /**
+     * Fristående kopia av medlemmen, inklusive historiken, t.ex. för sparning.
+     * Historiken kopieras under medlemmens monitor; övriga fält ändras under registrets
+     * monitor, som anroparen håller.
+     */
+    public synchronized Member copy() {
+        return new Member(memberId, firstName, lastName, phone, email, status, new ArrayList<>(rentalHistory));
+    }
+
+    /**
+     * Tar över ID och kontaktuppgifter från en annan medlem, utan validering
+     * (källan är redan validerad). Historiken lämnas orörd.
+     */
+    public void copyDetailsFrom(Member source) {
+        this.memberId = source.memberId;
+        this.firstName = source.firstName;
+        this.lastName = source.lastName;
+        this.phone = source.phone;
+        this.email = source.email;
+        this.status = source.status;
+    }
+
     public String getName() {
         return firstName + " " + lastName;
     }
@@ -1,103 +1,206 @@
 package se.scooterrental.model;
 
-import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 /**
  * Representerar en uthyrningstransaktion.
- * Uppdaterad med robust tids-parsing för att fixa "0 kr"-felet på gamla data.
+ * Tiderna lagras som epoch-sekunder. Gamla strängformat (med/utan sekunder och ISO)
+ * tolkas en gång vid inläsning, så att kostnadsberäkningen slipper parsa text.
+ * En tidsträng som inte går att tolka behålls som den är och skrivs tillbaka oförändrad.
  */
 public class Rental {
+    /** Markerar att en tidpunkt saknas. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private String id;
     private String memberId;
     private String itemId;
     private PricePolicy pricePolicy;
-    private String startTime;
-    private String endTime;
+    private long startEpochSecond;
+    private long endEpochSecond;
     private boolean isActive;
     private double totalCost;
+    // Ursprungliga tidsträngar som inte gick att tolka; null när tiden tolkades (eller saknas)
+    private String unparsedStartTime;
+    private String unparsedEndTime;
+
+    // Formaterad starttid cachas eftersom tabellerna läser den varje sekund
+    private transient String startTimeText;
 
     // Formatterare med sekunder (Standard för nya)
     private static final DateTimeFormatter FORMATTER_SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     // Formatterare utan sekunder (Fallback för gamla data)
     private static final DateTimeFormatter FORMATTER_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
 
     public Rental(String id, String memberId, String itemId, PricePolicy pricePolicy) {
         this.id = id;
         this.memberId = memberId;
         this.itemId = itemId;
         this.pricePolicy = pricePolicy;
-        this.startTime = LocalDateTime.now().format(FORMATTER_SECONDS);
+        this.startEpochSecond = nowEpochSecond();
+        this.endEpochSecond = NO_TIME;
         this.isActive = true;
         this.totalCost = 0.0;
     }
 
+    /**
+     * Konstruktor för inläsning av sparade uthyrningar.
+     */
+    public Rental(String id, String memberId, String itemId, PricePolicy pricePolicy,
+                  long startEpochSecond, long endEpochSecond, boolean isActive, double totalCost) {
+        this.id = id;
+        this.memberId = memberId;
+        this.itemId = itemId;
+        this.pricePolicy = pricePolicy;
+        this.startEpochSecond = startEpochSecond;
+        this.endEpochSecond = endEpochSecond;
+        this.isActive = isActive;
+        this.totalCost = totalCost;
+    }
+
     public String getRentalId() { return id; }
     public String getId() { return id; }
     public String getMemberId() { return memberId; }
     public String getItemId() { return itemId; }
     public PricePolicy getPricePolicy() { return pricePolicy; }
-    public String getStartTime() { return startTime; }
     public boolean isActive() { return isActive; }
     public double getTotalCost() { return totalCost; }
+    public long getStartEpochSecond() { return startEpochSecond; }
+    public long getEndEpochSecond() { return endEpochSecond; }
+
+    public String getUnparsedStartTime() { return unparsedStartTime; }
+    public String getUnparsedEndTime() { return unparsedEndTime; }
+
+    public String getStartTime() {
+        if (startTimeText == null) {
+            startTimeText = startEpochSecond == NO_TIME ? unparsedStartTime : formatEpochSecond(startEpochSecond);
+        }
+        return startTimeText;
+    }
+
+    public String getEndTime() {
+        return endEpochSecond == NO_TIME ? unparsedEndTime : formatEpochSecond(endEpochSecond);
+    }
+
+    /**
+     * Behåller de sparade tidsträngarna för tider som inte kunde tolkas, så att de inte går
+     * förlorade vid nästa sparning. Strängar för tider som tolkades ignoreras.
+     */
+    public void keepUnparsedTimes(String startText, String endText) {
+        if (startEpochSecond == NO_TIME && startText != null && !startText.isEmpty()) {
+            unparsedStartTime = startText;
+            startTimeText = null;
+        }
+        if (endEpochSecond == NO_TIME && endText != null && !endText.isEmpty()) {
+            unparsedEndTime = endText;
+        }
+    }
+
+    /**
+     * @return Starttiden som lokal tid, eller null om den saknas.
+     */
+    public LocalDateTime getStartDateTime() {
+        if (startEpochSecond == NO_TIME) return null;
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(startEpochSecond), ZONE);
+    }
+
+    /**
+     * @return Startdatumet, eller null om starttid saknas.
+     */
+    public LocalDate getStartDate() {
+        LocalDateTime start = getStartDateTime();
+        return start != null ? start.toLocalDate() : null;
+    }
 
     /**
      * Beräknar kostnaden baserat på exakta sekunder (Taxameter-stil).
      */
     public double getCurrentCost(double basePricePerHour) {
+        return getCostAt(basePricePerHour, nowEpochSecond());
+    }
+
+    /**
+     * Beräknar kostnaden vid en given tidpunkt. Ren aritmetik, ingen parsing.
+     * @param basePricePerHour Pris per timme.
+     * @param nowEpochSecond Tidpunkten som gäller för aktiva uthyrningar.
+     */
+    public double getCostAt(double basePricePerHour, long nowEpochSecond) {
         if (!isActive && totalCost > 0) {
             return totalCost;
         }
+        if (startEpochSecond == NO_TIME) {
+            return 0.0;
+        }
 
-        try {
-            // Använder smart parsing som klarar både gamla och nya tider
-            LocalDateTime start = parseDateTime(startTime);
-            LocalDateTime end = isActive ? LocalDateTime.now() : parseDateTime(endTime);
-
-            // Räkna exakta sekunder
-            long seconds = Duration.between(start, end).toSeconds();
-
-            if (seconds < 0) seconds = 0;
-
-            // Konvertera sekunder till exakta timmar (t.ex. 0.00027 timmar)
-            double hours = seconds / 3600.0;
+        long end = isActive || endEpochSecond == NO_TIME ? nowEpochSecond : endEpochSecond;
 
-            if (pricePolicy != null) {
-                return pricePolicy.calculatePrice(basePricePerHour, hours);
-            }
+        // Räkna exakta sekunder
+        long seconds = end - startEpochSecond;
+        if (seconds < 0) seconds = 0;
 
-            // Fallback om policy saknas
-            return basePricePerHour * hours;
+        // Konvertera sekunder till exakta timmar (t.ex. 0.00027 timmar)
+        double hours = seconds / 3600.0;
 
-        } catch (Exception e) {
-            // Om detta sker returneras 0, vilket var problemet förut.
-            // Nu med parseDateTime borde detta inte ske.
-            return 0.0;
+        if (pricePolicy != null) {
+            return pricePolicy.calculatePrice(basePricePerHour, hours);
         }
-    }
 
-    /**
-     * Hjälpmetod: Försöker läsa sekunder, annars faller tillbaka på minuter.
-     */
-    private LocalDateTime parseDateTime(String timeStr) {
-        if (timeStr == null) return LocalDateTime.now();
-        try {
-            return LocalDateTime.parse(timeStr, FORMATTER_SECONDS);
-        } catch (DateTimeParseException e) {
-            // Fallback för gamla data som saknar sekunder (t.ex. "2025-12-03 17:16")
-            return LocalDateTime.parse(timeStr, FORMATTER_MINUTES);
-        }
+        // Fallback om policy saknas
+        return basePricePerHour * hours;
     }
 
     public void endRental(double finalCost) {
         this.isActive = false;
-        this.endTime = LocalDateTime.now().format(FORMATTER_SECONDS);
+        this.endEpochSecond = nowEpochSecond();
+        this.unparsedEndTime = null;
         this.totalCost = finalCost;
     }
 
     public void setTotalCost(double cost) {
         this.totalCost = cost;
     }
-}
\ No newline at end of file
+
+    // --- Tidshjälpare ---
+
+    private static long nowEpochSecond() {
+        return System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * Tolkar en sparad tidsträng. Formatet väljs utifrån strängens form istället för
+     * att prova formatterare i tur och ordning och fånga undantag.
+     * Stöder "yyyy-MM-dd HH:mm:ss", äldre "yyyy-MM-dd HH:mm" och ISO ("2025-12-02T16:33:31.7289042").
+     * @param text Tidsträngen.
+     * @return Epoch-sekunder, eller {@link #NO_TIME} om strängen saknas eller inte kan tolkas.
+     */
+    public static long parseEpochSecond(String text) {
+        if (text == null || text.isEmpty()) return NO_TIME;
+        try {
+            LocalDateTime dateTime;
+            if (text.indexOf('T') >= 0) {
+                dateTime = LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            } else if (text.length() == 16) {
+                dateTime = LocalDateTime.parse(text, FORMATTER_MINUTES);
+            } else {
+                dateTime = LocalDateTime.parse(text, FORMATTER_SECONDS);
+            }
+            return dateTime.atZone(ZONE).toEpochSecond();
+        } catch (RuntimeException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Formaterar epoch-sekunder som "yyyy-MM-dd HH:mm:ss".
+     * @return Tidsträngen, eller null om tiden saknas.
+     */
+    public static String formatEpochSecond(long epochSecond) {
+        if (epochSecond == NO_TIME) return null;
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZONE).format(FORMATTER_SECONDS);
+    }
+}
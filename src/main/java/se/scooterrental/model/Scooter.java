@@ -57,6 +57,13 @@ public class Scooter extends Item {
         this.hasElectricStart = hasElectricStart;
     }
 
+    @Override
+    public synchronized Scooter copy() {
+        Scooter copy = new Scooter(getItemId(), getName(), getCurrentRentalPrice(), licensePlate, engineDisplacement, hasElectricStart);
+        copyStateTo(copy);
+        return copy;
+    }
+
     @Override
     public String getUniqueInfo() {
         String startType = hasElectricStart ? "Elstart" : "Kickstart";
@@ -48,6 +48,13 @@ public class Sled extends Item {
         this.maxWeightKg = maxWeightKg;
     }
 
+    @Override
+    public synchronized Sled copy() {
+        Sled copy = new Sled(getItemId(), getName(), getCurrentRentalPrice(), type, maxWeightKg);
+        copyStateTo(copy);
+        return copy;
+    }
+
     @Override
     public String getUniqueInfo() {
         return String.format("Typ: %s, Maxvikt: %d kg", type, maxWeightKg);
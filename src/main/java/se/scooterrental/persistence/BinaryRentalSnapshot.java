@@ -0,0 +1,281 @@
+package se.scooterrental.persistence;
+
+import se.scooterrental.model.PricePolicy;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.StandardPricePolicy;
+import se.scooterrental.model.StudentPricePolicy;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binär ögonblicksbild av alla uthyrningar för snabb kallstart. Skrivs tillsammans med
+ * checkpointen och läses via en minnesmappad fil, utan någon texttolkning.
+ * JSON-filerna är fortfarande utbytesformatet; bilden är bara en cache som får kastas.
+ *
+ * Filformat (big-endian):
+ * <pre>
+ *  0  int   magic "RSNP"
+ *  4  int   version
+ *  8  long  journal-offset (kan skrivas om på plats, ingår inte i kontrollsumman)
+ * 16  long  CRC32 över allt från byte 24
+ * 24  int   antal strängar i ordlistan, följt av strängarna (int längd + UTF-8)
+ *     int   antal uthyrningar, följt av posterna (int längd + post)
+ * </pre>
+ * En post: rental-ID (int längd + UTF-8, -1 = null), medlem och item som index i ordlistan
+ * (-1 = null), policykod, start och slut i epoch-sekunder, aktiv-flagga och kostnad som double,
+ * sist start- och sluttid som text när de inte gick att tolka (int längd + UTF-8, -1 = null).
+ */
+class BinaryRentalSnapshot {
+
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int VERSION = 1;
+    private static final int OFFSET_POSITION = 8;
+    private static final int CRC_POSITION = 16;
+    private static final int BODY_POSITION = 24;
+
+    private static final byte POLICY_NONE = 0;
+    private static final byte POLICY_STANDARD = 1;
+    private static final byte POLICY_STUDENT = 2;
+
+    private final Path path;
+
+    BinaryRentalSnapshot(Path path) {
+        this.path = path;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Skriver bilden till en temporär fil och byter sedan ut den gamla atomärt.
+     * Uthyrningarna itereras två gånger (ordlista, sedan poster) och strömmas till filen;
+     * kontrollsumman räknas under skrivningen och fylls i sist.
+     * @param rentals Måste ge samma poster vid båda genomläsningarna.
+     * @return true om bilden skrevs och synkades till disk, annars false.
+     */
+    boolean write(Iterable<Rental> rentals, long logOffset) {
+        // Medlems- och item-ID:n upprepas i varje post; de skrivs en gång och refereras med index
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int count = 0;
+        for (Rental rental : rentals) {
+            intern(rental.getMemberId(), dictionary, strings);
+            intern(rental.getItemId(), dictionary, strings);
+            count++;
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(BODY_POSITION);
+            header.putInt(MAGIC).putInt(VERSION).putLong(logOffset).putLong(0L).flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            // Kanalens position står nu på BODY_POSITION; allt därifrån ingår i kontrollsumman
+            CRC32 crc = new CRC32();
+            DataOutputStream body = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), crc));
+            body.writeInt(strings.size());
+            for (String s : strings) {
+                writeString(body, s);
+            }
+            body.writeInt(count);
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(64);
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            int written = 0;
+            for (Rental rental : rentals) {
+                if (++written > count) break;
+                recordBytes.reset();
+                writeRecord(record, rental, dictionary);
+                record.flush();
+                body.writeInt(recordBytes.size());
+                recordBytes.writeTo(body);
+            }
+            body.flush();
+            if (written != count) {
+                throw new IOException("Uthyrningarna ändrades under skrivningen (" + count + " blev " + written + ").");
+            }
+
+            ByteBuffer checksum = ByteBuffer.allocate(Long.BYTES).putLong(0, crc.getValue());
+            while (checksum.hasRemaining()) channel.write(checksum, CRC_POSITION + checksum.position());
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("FEL: Kunde inte skriva binär ögonblicksbild " + path + ". " + e.getMessage());
+            return false;
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return DataHandler.forceDirectory(path);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte byta ut binär ögonblicksbild " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Läser bilden via en minnesmappad fil.
+     * @return Bilden, eller null om filen saknas, har fel version eller inte klarar kontrollsumman.
+     */
+    RentalCheckpoint.Snapshot read() {
+        if (!exists()) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BODY_POSITION || size > Integer.MAX_VALUE) {
+                System.err.println("VARNING: Binär ögonblicksbild " + path + " har ogiltig storlek. Ignoreras.");
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                System.err.println("VARNING: Binär ögonblicksbild " + path + " har okänt format. Ignoreras.");
+                return null;
+            }
+            long offset = buffer.getLong(OFFSET_POSITION);
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(BODY_POSITION, (int) size - BODY_POSITION));
+            if (crc.getValue() != buffer.getLong(CRC_POSITION)) {
+                System.err.println("VARNING: Binär ögonblicksbild " + path + " är skadad. Ignoreras.");
+                return null;
+            }
+
+            buffer.position(BODY_POSITION);
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            int count = buffer.getInt();
+            List<Rental> rentals = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                int next = buffer.position() + length;
+                rentals.add(readRecord(buffer, strings));
+                // Längdprefixet låter en senare version lägga till fält sist i posten
+                buffer.position(next);
+            }
+            return new RentalCheckpoint.Snapshot(rentals, offset);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("VARNING: Kunde inte läsa binär ögonblicksbild " + path + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Skriver om journal-offseten på plats, precis som {@link RentalCheckpoint#rewriteOffset(long)}.
+     * @return true om offseten skrevs (eller om bilden saknas), annars false.
+     */
+    boolean rewriteOffset(long logOffset) {
+        if (!exists()) return true;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(OFFSET_POSITION);
+            file.writeLong(logOffset);
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte uppdatera binär ögonblicksbild " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tar bort bilden, t.ex. när den inte längre motsvarar checkpointen.
+     * @return true om bilden är borta och borttagningen synkad till disk.
+     */
+    boolean delete() {
+        try {
+            Files.deleteIfExists(path);
+            return DataHandler.forceDirectory(path);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte ta bort binär ögonblicksbild " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void intern(String value, Map<String, Integer> dictionary, List<String> strings) {
+        if (value != null && dictionary.putIfAbsent(value, strings.size()) == null) {
+            strings.add(value);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Rental rental, Map<String, Integer> dictionary) throws IOException {
+        writeString(out, rental.getId());
+        out.writeInt(rental.getMemberId() != null ? dictionary.get(rental.getMemberId()) : -1);
+        out.writeInt(rental.getItemId() != null ? dictionary.get(rental.getItemId()) : -1);
+        out.writeByte(policyCode(rental.getPricePolicy()));
+        out.writeLong(rental.getStartEpochSecond());
+        out.writeLong(rental.getEndEpochSecond());
+        out.writeBoolean(rental.isActive());
+        out.writeDouble(rental.getTotalCost());
+        writeString(out, rental.getUnparsedStartTime());
+        writeString(out, rental.getUnparsedEndTime());
+    }
+
+    private static Rental readRecord(ByteBuffer in, String[] strings) {
+        String id = readString(in);
+        int memberIndex = in.getInt();
+        int itemIndex = in.getInt();
+        PricePolicy policy = policyFor(in.get());
+        long start = in.getLong();
+        long finish = in.getLong();
+        boolean active = in.get() != 0;
+        double totalCost = in.getDouble();
+        Rental rental = new Rental(id, memberIndex >= 0 ? strings[memberIndex] : null,
+                itemIndex >= 0 ? strings[itemIndex] : null, policy, start, finish, active, totalCost);
+        rental.keepUnparsedTimes(readString(in), readString(in));
+        return rental;
+    }
+
+    // Samma två policyer som PricePolicyTypeAdapter känner till
+    private static byte policyCode(PricePolicy policy) {
+        if (policy == null) return POLICY_NONE;
+        return policy instanceof StudentPricePolicy ? POLICY_STUDENT : POLICY_STANDARD;
+    }
+
+    private static PricePolicy policyFor(byte code) {
+        switch (code) {
+            case POLICY_NONE: return null;
+            case POLICY_STUDENT: return new StudentPricePolicy();
+            default: return new StandardPricePolicy();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -5,12 +5,16 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import se.scooterrental.model.Member;
 import se.scooterrental.model.Item;
@@ -21,16 +25,27 @@ import se.scooterrental.model.PricePolicy;
 import se.scooterrental.model.StandardPricePolicy;
 import se.scooterrental.model.StudentPricePolicy;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * Hanterar inläsning och sparning av applikationens data (medlemmar, items och uthyrningar)
@@ -56,81 +71,318 @@ public class DataHandler {
         }
     }
 
+    // --- Strömmande adaptrar ---
+    // Läser och skriver direkt mot JsonReader/JsonWriter, utan reflektion och utan mellanliggande
+    // JsonObject-träd. Fält kan komma i vilken ordning som helst och okända fält hoppas över.
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
     // --- Manuell Adapter för Polymorfism (Item) ---
-    private static class ItemTypeAdapter implements JsonDeserializer<Item> {
+    private static class ItemTypeAdapter extends TypeAdapter<Item> {
         private static final String CLASS_TYPE = "itemType";
 
         @Override
-        public Item deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-                throws JsonParseException {
-            JsonObject jsonObject = json.getAsJsonObject();
-            JsonElement typeElement = jsonObject.get(CLASS_TYPE);
+        public void write(JsonWriter out, Item item) throws IOException {
+            out.beginObject();
+            // Typtaggen skrivs först så att läsaren vet typen direkt
+            if (item instanceof Scooter) {
+                Scooter scooter = (Scooter) item;
+                out.name(CLASS_TYPE).value("Scooter");
+                out.name("engineDisplacement").value(scooter.getEngineDisplacement());
+                out.name("licensePlate").value(scooter.getLicensePlate());
+                out.name("hasElectricStart").value(scooter.hasElectricStart());
+            } else if (item instanceof Sled) {
+                Sled sled = (Sled) item;
+                out.name(CLASS_TYPE).value("Sled");
+                out.name("type").value(sled.getType());
+                out.name("maxWeightKg").value(sled.getMaxWeightKg());
+            }
+            out.name("itemId").value(item.getItemId());
+            out.name("name").value(item.getName());
+            out.name("isAvailable").value(item.isAvailable());
+            out.name("currentRentalPrice").value(item.getCurrentRentalPrice());
+            out.name("rentalCount").value(item.getRentalCount());
+            out.endObject();
+        }
 
-            if (typeElement == null) {
+        @Override
+        public Item read(JsonReader in) throws IOException {
+            String type = null, itemId = null, name = null, licensePlate = null, sledType = null;
+            boolean isAvailable = true, hasElectricStart = false;
+            double price = 0.0;
+            int rentalCount = 0, engineDisplacement = 0, maxWeightKg = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case CLASS_TYPE: type = nextStringOrNull(in); break;
+                    case "itemId": itemId = nextStringOrNull(in); break;
+                    case "name": name = nextStringOrNull(in); break;
+                    case "isAvailable": isAvailable = in.nextBoolean(); break;
+                    case "currentRentalPrice": price = in.nextDouble(); break;
+                    case "rentalCount": rentalCount = in.nextInt(); break;
+                    case "engineDisplacement": engineDisplacement = in.nextInt(); break;
+                    case "licensePlate": licensePlate = nextStringOrNull(in); break;
+                    case "hasElectricStart": hasElectricStart = in.nextBoolean(); break;
+                    case "type": sledType = nextStringOrNull(in); break;
+                    case "maxWeightKg": maxWeightKg = in.nextInt(); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+
+            if (type == null) {
                 // Om filen saknar typinformation
                 throw new JsonParseException("Saknar 'itemType' fält för polymorf deserialisering.");
             }
 
-            String type = typeElement.getAsString();
-
-            // Baserat på typ-strängen, använd rätt subklass för deserialisering
+            Item item;
             switch (type) {
                 case "Scooter":
-                    return context.deserialize(jsonObject, Scooter.class);
+                    item = new Scooter(itemId, name, price, licensePlate, engineDisplacement, hasElectricStart);
+                    break;
                 case "Sled":
-                    return context.deserialize(jsonObject, Sled.class);
+                    item = new Sled(itemId, name, price, sledType, maxWeightKg);
+                    break;
                 default:
                     throw new JsonParseException("Okänd Item-typ: " + type);
             }
+            item.setAvailable(isAvailable);
+            item.setRentalCount(rentalCount);
+            return item;
         }
     }
 
     // --- Manuell Adapter för Polymorfism (PricePolicy) - FIXAT! ---
-    private static class PricePolicyTypeAdapter implements JsonSerializer<PricePolicy>, JsonDeserializer<PricePolicy> {
+    private static class PricePolicyTypeAdapter extends TypeAdapter<PricePolicy> {
         private static final String CLASS_TYPE = "policyType";
 
         @Override
-        public JsonElement serialize(PricePolicy src, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject result = new JsonObject();
+        public void write(JsonWriter out, PricePolicy policy) throws IOException {
+            out.beginObject();
             // Avgör vilken typ av policy det är och spara som en sträng
-            result.addProperty(CLASS_TYPE, src instanceof StandardPricePolicy ? "Standard" : "Student");
-            return result;
+            out.name(CLASS_TYPE).value(policy instanceof StandardPricePolicy ? "Standard" : "Student");
+            out.endObject();
         }
 
         @Override
-        public PricePolicy deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-                throws JsonParseException {
-            JsonObject jsonObject = json.getAsJsonObject();
-            JsonElement typeElement = jsonObject.get(CLASS_TYPE);
+        public PricePolicy read(JsonReader in) throws IOException {
+            String type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if (CLASS_TYPE.equals(in.nextName())) type = nextStringOrNull(in);
+                else in.skipValue();
+            }
+            in.endObject();
 
             // Om typinformation saknas (gamla filer eller felaktig data), kör fallback till Standard
-            if (typeElement == null) {
-                return new StandardPricePolicy();
+            return "Student".equals(type) ? new StudentPricePolicy() : new StandardPricePolicy();
+        }
+    }
+
+    // --- Adapter för Member ---
+    private static class MemberTypeAdapter extends TypeAdapter<Member> {
+
+        @Override
+        public void write(JsonWriter out, Member member) throws IOException {
+            out.beginObject();
+            out.name("memberId").value(member.getMemberId());
+            out.name("firstName").value(member.getFirstName());
+            out.name("lastName").value(member.getLastName());
+            out.name("phone").value(member.getPhone());
+            out.name("email").value(member.getEmail());
+            out.name("status").value(member.getStatus() != null ? member.getStatus().name() : null);
+            out.name("rentalHistory").beginArray();
+            for (String ref : member.getRentalHistory()) {
+                out.value(ref);
             }
+            out.endArray();
+            out.endObject();
+        }
 
-            String type = typeElement.getAsString();
+        @Override
+        public Member read(JsonReader in) throws IOException {
+            String memberId = null, firstName = null, lastName = null, phone = null, email = null;
+            Member.MemberStatus status = null;
+            List<String> history = new ArrayList<>();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "memberId": memberId = nextStringOrNull(in); break;
+                    case "firstName": firstName = nextStringOrNull(in); break;
+                    case "lastName": lastName = nextStringOrNull(in); break;
+                    case "phone": phone = nextStringOrNull(in); break;
+                    case "email": email = nextStringOrNull(in); break;
+                    case "status": {
+                        String value = nextStringOrNull(in);
+                        status = value != null ? Member.MemberStatus.valueOf(value) : null;
+                        break;
+                    }
+                    case "rentalHistory": {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) history.add(nextStringOrNull(in));
+                        in.endArray();
+                        break;
+                    }
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return new Member(memberId, firstName, lastName, phone, email, status, history);
+        }
+    }
 
-            switch (type) {
-                case "Student":
-                    return new StudentPricePolicy();
-                case "Standard":
-                default:
-                    return new StandardPricePolicy();
+    // --- Manuell Adapter för Rental (tider som epoch-sekunder internt) ---
+    private static class RentalTypeAdapter extends TypeAdapter<Rental> {
+        private final TypeAdapter<PricePolicy> policyAdapter = new PricePolicyTypeAdapter();
+
+        @Override
+        public void write(JsonWriter out, Rental rental) throws IOException {
+            out.beginObject();
+            out.name("id").value(rental.getId());
+            out.name("memberId").value(rental.getMemberId());
+            out.name("itemId").value(rental.getItemId());
+            if (rental.getPricePolicy() != null) {
+                out.name("pricePolicy");
+                policyAdapter.write(out, rental.getPricePolicy());
+            }
+            // Filformatet behålls som läsbar text så att JSON-filerna är bakåtkompatibla
+            out.name("startTime").value(rental.getStartTime());
+            out.name("endTime").value(rental.getEndTime());
+            out.name("isActive").value(rental.isActive());
+            out.name("totalCost").value(rental.getTotalCost());
+            out.endObject();
+        }
+
+        @Override
+        public Rental read(JsonReader in) throws IOException {
+            String id = null, memberId = null, itemId = null, startTime = null, endTime = null;
+            PricePolicy policy = null;
+            boolean isActive = false;
+            double totalCost = 0.0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": id = nextStringOrNull(in); break;
+                    case "memberId": memberId = nextStringOrNull(in); break;
+                    case "itemId": itemId = nextStringOrNull(in); break;
+                    case "pricePolicy": {
+                        if (in.peek() == JsonToken.NULL) in.nextNull();
+                        else policy = policyAdapter.read(in);
+                        break;
+                    }
+                    case "startTime": startTime = nextStringOrNull(in); break;
+                    case "endTime": endTime = nextStringOrNull(in); break;
+                    case "isActive": isActive = in.nextBoolean(); break;
+                    case "totalCost": totalCost = in.nextDouble(); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+
+            // Alla tre historiska tidsformat tolkas här, en gång, vid inläsning
+            Rental rental = new Rental(id, memberId, itemId, policy,
+                    Rental.parseEpochSecond(startTime), Rental.parseEpochSecond(endTime), isActive, totalCost);
+            warnIfUnparsed(id, "starttid", startTime, rental.getStartEpochSecond());
+            warnIfUnparsed(id, "sluttid", endTime, rental.getEndEpochSecond());
+            // Otolkbara tider behålls som text, så att nästa sparning inte skriver över dem med null
+            rental.keepUnparsedTimes(startTime, endTime);
+            return rental;
+        }
+
+        private static void warnIfUnparsed(String id, String field, String text, long epochSecond) {
+            if (epochSecond == Rental.NO_TIME && text != null && !text.isEmpty()) {
+                System.err.println("VARNING: Kunde inte tolka " + field + " \"" + text + "\" för uthyrning "
+                        + id + ". Värdet behålls oförändrat.");
             }
         }
     }
 
     // Konfigurerar GSON med alla manuella adaptrar
-    private static final Gson GSON = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(Item.class, new ItemTypeAdapter())
-            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-            .registerTypeAdapter(PricePolicy.class, new PricePolicyTypeAdapter()) // FIX: Registrerad adapter för PricePolicy
-            .create();
+    private static GsonBuilder baseBuilder() {
+        return new GsonBuilder()
+                // Hierarki-adaptrar så att även Scooter/Sled och policy-subklasserna går via dem
+                .registerTypeHierarchyAdapter(Item.class, new ItemTypeAdapter().nullSafe())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeHierarchyAdapter(PricePolicy.class, new PricePolicyTypeAdapter().nullSafe()) // FIX: Registrerad adapter för PricePolicy
+                .registerTypeAdapter(Member.class, new MemberTypeAdapter().nullSafe())
+                .registerTypeAdapter(Rental.class, new RentalTypeAdapter().nullSafe());
+    }
+
+    private static final Gson GSON = baseBuilder().setPrettyPrinting().create();
+
+    // Kompakt variant (en rad per objekt) för journalen
+    private static final Gson COMPACT_GSON = baseBuilder().create();
+
+    /**
+     * Samma kompakta konfiguration som journalen och checkpointen använder; för tester i paketet.
+     */
+    static Gson compactGson() {
+        return COMPACT_GSON;
+    }
+
+    private static final Type MEMBER_LIST_TYPE = new TypeToken<List<Member>>() {}.getType();
+    private static final Type ITEM_LIST_TYPE = new TypeToken<List<Item>>() {}.getType();
+    private static final Type RENTAL_LIST_TYPE = new TypeToken<List<Rental>>() {}.getType();
 
     private static final String MEMBER_FILE = "members.json";
     private static final String ITEM_FILE = "items.json";
     private static final String RENTAL_FILE = "rentals.json";
+    private static final String RENTAL_LOG_FILE = "rentals.log";
+    private static final String RENTAL_CHECKPOINT_FILE = "rentals.checkpoint";
+    private static final String RENTAL_SNAPSHOT_FILE = "rentals.snapshot";
+    // Commit-markör för en unit of work: listar filerna vars .tmp-versioner ska bytas in
+    private static final String TRANSACTION_FILE = "transaction.commit";
+    private static final String TMP_SUFFIX = ".tmp";
+    // Radavgränsad variant av en datafil; finns den används den istället för JSON-arrayen
+    private static final String NDJSON_SUFFIX = ".ndjson";
+
+    private static final RentalJournal RENTAL_JOURNAL = new RentalJournal(Path.of(RENTAL_LOG_FILE), COMPACT_GSON);
+    private static final RentalCheckpoint RENTAL_CHECKPOINT = new RentalCheckpoint(Path.of(RENTAL_CHECKPOINT_FILE), COMPACT_GSON);
+    // Binär kopia av checkpointen som läses utan texttolkning vid kallstart
+    private static final BinaryRentalSnapshot RENTAL_SNAPSHOT = new BinaryRentalSnapshot(Path.of(RENTAL_SNAPSHOT_FILE));
+
+    // Skyddar journalen så att kompaktering inte sker samtidigt som en ny händelse skrivs
+    private static final Object RENTAL_LOCK = new Object();
+
+    // Antal journalhändelser mellan två checkpoints
+    private static final int CHECKPOINT_INTERVAL = 500;
+    private static final AtomicInteger eventsSinceCheckpoint = new AtomicInteger();
+    private static final AtomicBoolean checkpointRunning = new AtomicBoolean(false);
+
+    // Checkpoint och kompaktering körs i en egen daemon-tråd så att FX-tråden aldrig blockeras
+    private static final ExecutorService CHECKPOINT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Rental-Checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Sparningar från tjänsterna slås ihop och skrivs i bakgrunden, senast efter denna fördröjning
+    private static final long WRITE_BEHIND_DELAY_MS = 250;
+    private static final WriteBehindQueue WRITE_QUEUE = new WriteBehindQueue(WRITE_BEHIND_DELAY_MS);
+
+    // Nya poster som läggs sist i NDJSON-filen istället för att hela filen skrivs om
+    private static final PendingAppends MEMBER_APPENDS = new PendingAppends(MEMBER_FILE, Member.class);
+    private static final PendingAppends ITEM_APPENDS = new PendingAppends(ITEM_FILE, Item.class);
+    // Tilläggen köas under en egen nyckel, så att de inte ersätter en köad hel sparning av filen
+    private static final String APPEND_KEY_SUFFIX = ":append";
+
+    static {
+        // Slutför (eller kasta) en unit of work som avbröts av en krasch, innan något läses in
+        recoverTransaction(Path.of(""));
+    }
 
     // --- Läs-metoder ---
 
@@ -139,7 +391,7 @@ public class DataHandler {
      * @return Lista av Member-objekt. Tom lista vid fel/ingen fil.
      */
     public static List<Member> loadMembers() {
-        return loadList(MEMBER_FILE, new TypeToken<List<Member>>() {}.getType());
+        return loadList(MEMBER_FILE, Member.class, MEMBER_LIST_TYPE);
     }
 
     /**
@@ -147,32 +399,67 @@ public class DataHandler {
      * @return Lista av Item-objekt. Tom lista vid fel/ingen fil.
      */
     public static List<Item> loadItems() {
-        return loadList(ITEM_FILE, new TypeToken<List<Item>>() {}.getType());
+        return loadList(ITEM_FILE, Item.class, ITEM_LIST_TYPE);
     }
 
     /**
-     * Läser in lista av uthyrningar från JSON-fil.
+     * Läser in uthyrningar från senaste checkpoint och spelar upp journalens svans ovanpå.
+     * Den binära ögonblicksbilden används om den finns och är giltig, annars JSON-checkpointen.
+     * Saknas checkpoint läses rentals.json och hela journalen spelas upp. rentals.json skrivs
+     * inte längre; den finns bara kvar som importkälla för data från före journalen.
      * @return Lista av Rental-objekt. Tom lista vid fel/ingen fil.
      */
     public static List<Rental> loadRentals() {
-        return loadList(RENTAL_FILE, new TypeToken<List<Rental>>() {}.getType());
+        synchronized (RENTAL_LOCK) {
+            RentalCheckpoint.Snapshot snapshot = RENTAL_SNAPSHOT.read();
+            if (snapshot == null) {
+                snapshot = RENTAL_CHECKPOINT.read();
+            }
+
+            List<Rental> rentals;
+            long offset;
+            if (snapshot != null) {
+                rentals = snapshot.rentals;
+                offset = snapshot.logOffset;
+            } else {
+                rentals = loadList(RENTAL_FILE, Rental.class, RENTAL_LIST_TYPE);
+                offset = 0L;
+            }
+
+            int replayed = RENTAL_JOURNAL.replay(rentals, offset);
+
+            // Utan checkpoint ska en tas direkt så att nästa uppstart går snabbt
+            eventsSinceCheckpoint.set(snapshot == null ? CHECKPOINT_INTERVAL : replayed);
+            return rentals;
+        }
     }
 
     /**
-     * Generisk metod för att läsa in en lista från en JSON-fil.
-     * @param filename Filnamnet.
-     * @param type Typinformation för Gson.
+     * Generisk metod för att läsa in en lista från en JSON- eller NDJSON-fil.
+     * @param jsonFile Filnamnet i JSON-format; NDJSON-varianten läses om den finns.
+     * @param elementType Typ för en enskild post (NDJSON).
+     * @param type Typinformation för hela listan (JSON-array).
      * @param <T> Typen av lista.
      * @return Den inlästa listan.
      */
-    private static <T> List<T> loadList(String filename, Type type) {
+    private static <T> List<T> loadList(String jsonFile, Type elementType, Type type) {
+        String filename = storageFile(jsonFile);
         Path path = Path.of(filename);
         if (!Files.exists(path)) {
             System.out.println("INFO: Filen " + filename + " hittades inte. Startar med tom lista.");
             return new ArrayList<>();
         }
 
-        try (FileReader reader = new FileReader(filename)) {
+        if (filename.endsWith(NDJSON_SUFFIX)) {
+            try {
+                return new NdjsonFile(path, COMPACT_GSON).read(elementType);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("FEL: Kunde inte läsa från filen " + filename + ". " + e.getMessage());
+                return new ArrayList<>();
+            }
+        }
+
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
             List<T> list = GSON.fromJson(reader, type);
             return list != null ? list : new ArrayList<>();
         } catch (IOException e) {
@@ -192,7 +479,7 @@ public class DataHandler {
      * @return true om sparning lyckades, annars false.
      */
     public static boolean saveMembers(List<Member> members) {
-        return saveObject(members, MEMBER_FILE);
+        return saveList(members, Member.class, MEMBER_LIST_TYPE, MEMBER_FILE);
     }
 
     /**
@@ -201,53 +488,412 @@ public class DataHandler {
      * @return true om sparning lyckades, annars false.
      */
     public static boolean saveItems(List<Item> items) {
-        return saveObject(items, ITEM_FILE);
+        return saveList(items, Item.class, ITEM_LIST_TYPE, ITEM_FILE);
     }
 
+    // --- Write-behind ---
+
     /**
-     * Sparar lista av uthyrningar till JSON-fil.
-     * @param rentals Listan med Rental-objekt att spara.
-     * @return true om sparning lyckades, annars false.
+     * Köar en sparning av medlemmarna. Flera anrop i snabb följd ger en enda skrivning.
+     * @param members Ger listan att spara; anropas först när skrivningen utförs.
+     * @return Future som blir true när filen nått disken, annars false.
+     */
+    public static CompletableFuture<Boolean> saveMembersAsync(Supplier<List<Member>> members) {
+        return WRITE_QUEUE.submit(MEMBER_FILE, () -> saveTracked(MEMBER_APPENDS, members, MEMBER_LIST_TYPE));
+    }
+
+    /**
+     * Köar en sparning av lagret. Flera anrop i snabb följd ger en enda skrivning.
+     * @param items Ger listan att spara; anropas först när skrivningen utförs.
+     * @return Future som blir true när filen nått disken, annars false.
+     */
+    public static CompletableFuture<Boolean> saveItemsAsync(Supplier<List<Item>> items) {
+        return WRITE_QUEUE.submit(ITEM_FILE, () -> saveTracked(ITEM_APPENDS, items, ITEM_LIST_TYPE));
+    }
+
+    /**
+     * Köar en ny medlem. Lagras medlemmarna som NDJSON läggs posten sist i filen;
+     * annars (eller om tillägget misslyckas) skrivs hela filen om.
+     * @param member En fristående kopia av den nya medlemmen.
+     * @param members Ger hela listan om filen måste skrivas om.
+     * @return Future som blir true när medlemmen nått disken, annars false.
+     */
+    public static CompletableFuture<Boolean> appendMemberAsync(Member member, Supplier<List<Member>> members) {
+        MEMBER_APPENDS.add(member);
+        return WRITE_QUEUE.submit(MEMBER_FILE + APPEND_KEY_SUFFIX,
+                () -> flushAppends(MEMBER_APPENDS, () -> saveTracked(MEMBER_APPENDS, members, MEMBER_LIST_TYPE)));
+    }
+
+    /**
+     * Köar ett nytt item, på samma sätt som {@link #appendMemberAsync(Member, Supplier)}.
+     * @param item En fristående kopia av det nya itemet.
+     */
+    public static CompletableFuture<Boolean> appendItemAsync(Item item, Supplier<List<Item>> items) {
+        ITEM_APPENDS.add(item);
+        return WRITE_QUEUE.submit(ITEM_FILE + APPEND_KEY_SUFFIX,
+                () -> flushAppends(ITEM_APPENDS, () -> saveTracked(ITEM_APPENDS, items, ITEM_LIST_TYPE)));
+    }
+
+    /**
+     * Hel sparning som noterar sin generation, så att köade tillägg den redan täcker hoppas över.
+     */
+    private static <T> boolean saveTracked(PendingAppends appends, Supplier<List<T>> list, Type listType) {
+        long generation = appends.beginFullWrite();
+        if (!saveList(list.get(), appends.elementType, listType, appends.file)) return false;
+        appends.fullWriteDone(generation);
+        return true;
+    }
+
+    private static boolean flushAppends(PendingAppends appends, BooleanSupplier fullSave) {
+        List<Object> records = appends.drain();
+        if (records.isEmpty()) return true;
+        String file = storageFile(appends.file);
+        if (file.endsWith(NDJSON_SUFFIX)
+                && new NdjsonFile(Path.of(file), COMPACT_GSON).append(records, appends.elementType)) {
+            return true;
+        }
+        return fullSave.getAsBoolean();
+    }
+
+    /**
+     * Skriver alla köade sparningar direkt och väntar tills de är klara. Anropas vid avslut; stänger även journalen.
+     */
+    public static void flushPendingWrites() {
+        WRITE_QUEUE.flush();
+        synchronized (RENTAL_LOCK) {
+            RENTAL_JOURNAL.close();
+        }
+    }
+
+    // --- Unit of work ---
+
+    /**
+     * Påbörjar en unit of work som sparar flera samlingar i en gemensam flush.
+     */
+    public static UnitOfWork beginUnitOfWork() {
+        return new UnitOfWork();
+    }
+
+    static CompletableFuture<Boolean> commit(UnitOfWork work) {
+        // Nyckeln är filuppsättningen, så upprepade enheter av samma slag slås ihop
+        String key = TRANSACTION_FILE + ":" + (work.members != null ? "M" : "")
+                + (work.items != null ? "I" : "");
+        return WRITE_QUEUE.submit(key, () -> writeTransaction(work));
+    }
+
+    /**
+     * Skriver alla filer som .tmp, skriver commit-markören och byter sedan in filerna.
+     * Kraschar vi före markören gäller de gamla filerna; efter markören slutförs bytet vid nästa start.
+     */
+    private static boolean writeTransaction(UnitOfWork work) {
+        List<String> files = new ArrayList<>();
+        long memberGeneration = work.members != null ? MEMBER_APPENDS.beginFullWrite() : 0L;
+        if (work.members != null
+                && !stage(work.members.get(), Member.class, MEMBER_LIST_TYPE, storageFile(MEMBER_FILE), files)) {
+            return false;
+        }
+        long itemGeneration = work.items != null ? ITEM_APPENDS.beginFullWrite() : 0L;
+        if (work.items != null
+                && !stage(work.items.get(), Item.class, ITEM_LIST_TYPE, storageFile(ITEM_FILE), files)) {
+            return false;
+        }
+
+        try {
+            Path marker = Path.of(TRANSACTION_FILE);
+            Files.write(marker, files, StandardCharsets.UTF_8);
+            if (!force(marker)) return false;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte skriva commit-markören. " + e.getMessage());
+            return false;
+        }
+        if (!applyTransaction(Path.of(""), files)) return false;
+        if (work.members != null) MEMBER_APPENDS.fullWriteDone(memberGeneration);
+        if (work.items != null) ITEM_APPENDS.fullWriteDone(itemGeneration);
+        return true;
+    }
+
+    /**
+     * Skriver en samling till filens .tmp-version, synkar den och lägger filen i transaktionens lista.
+     */
+    private static <T> boolean stage(List<T> list, Type elementType, Type listType, String file, List<String> files) {
+        String tmp = file + TMP_SUFFIX;
+        if (!writeList(list, elementType, listType, file, tmp) || !force(Path.of(tmp))) {
+            return false;
+        }
+        files.add(file);
+        return true;
+    }
+
+    private static boolean applyTransaction(Path directory, List<String> files) {
+        try {
+            for (String file : files) {
+                Path tmp = directory.resolve(file + TMP_SUFFIX);
+                if (Files.exists(tmp)) {
+                    Files.move(tmp, directory.resolve(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            // Bytena måste vara beständiga innan markören försvinner
+            if (!files.isEmpty() && !forceDirectory(directory.resolve(files.get(0)))) return false;
+            Files.deleteIfExists(directory.resolve(TRANSACTION_FILE));
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte byta in filerna. " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Slutför eller kastar en avbruten unit of work.
+     * @param directory Katalogen datafilerna ligger i; vid start arbetskatalogen.
+     */
+    static void recoverTransaction(Path directory) {
+        Path marker = directory.resolve(TRANSACTION_FILE);
+        try {
+            if (Files.exists(marker)) {
+                List<String> files = Files.readAllLines(marker, StandardCharsets.UTF_8);
+                System.out.println("Slutför avbruten sparning: " + files);
+                applyTransaction(directory, files);
+            } else {
+                // Ingen markör: .tmp-filer från en ofullständig flush kastas, de gamla filerna gäller
+                for (String file : List.of(MEMBER_FILE, ITEM_FILE)) {
+                    Files.deleteIfExists(directory.resolve(file + TMP_SUFFIX));
+                    Files.deleteIfExists(directory.resolve(ndjsonFile(file) + TMP_SUFFIX));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte återställa avbruten sparning. " + e.getMessage());
+        }
+    }
+
+    static boolean force(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte synka " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Synkar katalogen en fil ligger i, så att ett namnbyte eller en borttagning överlever strömavbrott.
+     * @return true om katalogen synkades, eller om plattformen inte låter kataloger öppnas
+     *         (Windows); där är namnbytet redan journalfört av filsystemet.
+     */
+    static boolean forceDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) return true;
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return true;
+        }
+        try (channel) {
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte synka katalogen " + directory + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- NDJSON ---
+
+    /**
+     * Byter medlemmar och lager till NDJSON (en post per rad), skrivet från minnets aktuella data.
+     * Därefter läses och skrivs NDJSON-filerna; de gamla .json-filerna lämnas orörda som backup.
+     * Konverteringen går via skrivkön och ersätter köade sparningar av samma fil, så ingen
+     * ändring hamnar i den gamla filen efter att den nya skrivits. Uthyrningarna ligger i
+     * journalen och checkpointen och berörs inte.
+     * @return Future med antal konverterade poster totalt.
+     */
+    public static CompletableFuture<Integer> convertToNdjsonAsync(Supplier<List<Member>> members,
+                                                                  Supplier<List<Item>> items) {
+        AtomicInteger count = new AtomicInteger();
+        CompletableFuture<Boolean> memberDone = WRITE_QUEUE.submit(MEMBER_FILE,
+                () -> convert(MEMBER_APPENDS, members, MEMBER_LIST_TYPE, count));
+        CompletableFuture<Boolean> itemDone = WRITE_QUEUE.submit(ITEM_FILE,
+                () -> convert(ITEM_APPENDS, items, ITEM_LIST_TYPE, count));
+        return memberDone.thenCombine(itemDone, (m, i) -> count.get());
+    }
+
+    private static <T> boolean convert(PendingAppends appends, Supplier<List<T>> records, Type listType, AtomicInteger count) {
+        String jsonFile = appends.file;
+        String target = ndjsonFile(jsonFile);
+        // Redan konverterad: då är detta bara den sparning som konverteringen ersatte i kön
+        if (Files.exists(Path.of(target))) return saveTracked(appends, records, listType);
+        long generation = appends.beginFullWrite();
+        List<T> list = records.get();
+        if (!writeFile(list, appends.elementType, listType, target)) return false;
+        appends.fullWriteDone(generation);
+        count.addAndGet(list.size());
+        System.out.println("Konverterade " + list.size() + " poster från " + jsonFile + " till " + target);
+        return true;
+    }
+
+    /**
+     * @return true om minst en datafil lagras som NDJSON.
+     */
+    public static boolean isNdjsonStorage() {
+        return !storageFile(MEMBER_FILE).equals(MEMBER_FILE)
+                || !storageFile(ITEM_FILE).equals(ITEM_FILE)
+                || !storageFile(RENTAL_FILE).equals(RENTAL_FILE);
+    }
+
+    private static String ndjsonFile(String jsonFile) {
+        return jsonFile.substring(0, jsonFile.lastIndexOf('.')) + NDJSON_SUFFIX;
+    }
+
+    /**
+     * Filen som faktiskt gäller för en samling: NDJSON-varianten om den finns, annars JSON-arrayen.
+     */
+    private static String storageFile(String jsonFile) {
+        String ndjson = ndjsonFile(jsonFile);
+        return Files.exists(Path.of(ndjson)) ? ndjson : jsonFile;
+    }
+
+    private static <T> boolean saveList(List<T> list, Type elementType, Type listType, String jsonFile) {
+        return writeFile(list, elementType, listType, storageFile(jsonFile));
+    }
+
+    /**
+     * Skriver listan till en .tmp-fil i filens format, synkar den och byter in den atomärt.
+     * När true returneras har filen nått disken; ett avbrott lämnar alltid den gamla eller den nya filen.
+     */
+    private static <T> boolean writeFile(List<T> list, Type elementType, Type listType, String file) {
+        Path tmp = Path.of(file + TMP_SUFFIX);
+        if (!writeList(list, elementType, listType, file, tmp.toString()) || !force(tmp)) {
+            return false;
+        }
+        try {
+            Files.move(tmp, Path.of(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte byta in filen " + file + ". " + e.getMessage());
+            return false;
+        }
+        return forceDirectory(Path.of(file));
+    }
+
+    /**
+     * Skriver listan i det format som {@code file} har, till {@code target} (t.ex. en .tmp-fil).
      */
-    public static boolean saveRentals(List<Rental> rentals) {
-        return saveObject(rentals, RENTAL_FILE);
+    private static <T> boolean writeList(List<T> list, Type elementType, Type listType, String file, String target) {
+        if (!file.endsWith(NDJSON_SUFFIX)) {
+            return saveObject(list, listType, target);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(target), StandardCharsets.UTF_8)) {
+            new NdjsonFile(Path.of(file), COMPACT_GSON).writeTo(writer, list, elementType);
+            return true;
+        } catch (IOException | JsonIOException e) {
+            System.err.println("FEL: Kunde inte spara till filen " + target + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- Journal-metoder ---
+
+    /**
+     * Lägger till en startad uthyrning sist i journalen (konstant tid).
+     * @param rental Den nya uthyrningen.
+     * @return true om händelsen skrevs, annars false.
+     */
+    public static boolean appendRentalStarted(Rental rental) {
+        synchronized (RENTAL_LOCK) {
+            eventsSinceCheckpoint.incrementAndGet();
+            return RENTAL_JOURNAL.append(RentalJournal.START, rental);
+        }
+    }
+
+    /**
+     * Lägger till en avslutad uthyrning sist i journalen (konstant tid).
+     * @param rental Uthyrningen efter avslut.
+     * @return true om händelsen skrevs, annars false.
+     */
+    public static boolean appendRentalEnded(Rental rental) {
+        synchronized (RENTAL_LOCK) {
+            eventsSinceCheckpoint.incrementAndGet();
+            return RENTAL_JOURNAL.append(RentalJournal.END, rental);
+        }
+    }
+
+    // --- Checkpoint & kompaktering ---
+
+    /**
+     * @return true om tillräckligt många händelser skrivits sedan senaste checkpoint.
+     */
+    public static boolean isRentalCheckpointDue() {
+        return eventsSinceCheckpoint.get() >= CHECKPOINT_INTERVAL && !checkpointRunning.get();
+    }
+
+    /**
+     * Tar en checkpoint i bakgrunden. Anroparen betalar bara för att ta en ögonblicksbild
+     * (t.ex. kopiera de aktiva uthyrningarna); serialisering, skrivning och kompaktering av
+     * journalen sker i checkpoint-tråden, som strömmar posterna utan att samla dem i en lista.
+     * Gör ingenting om en checkpoint redan pågår.
+     * @param rentals Ger en ögonblicksbild som kan itereras flera gånger med samma poster;
+     *                anropas efter att offset lästs.
+     * @return Future som blir true när checkpointen och kompakteringen nått disken; false om
+     *         skrivningen misslyckades eller en annan checkpoint redan pågick.
+     */
+    public static CompletableFuture<Boolean> checkpointRentalsAsync(Supplier<? extends Iterable<Rental>> rentals) {
+        if (!checkpointRunning.compareAndSet(false, true)) return CompletableFuture.completedFuture(false);
+
+        // Offset först, sedan bild: allt före offset finns garanterat i bilden,
+        // och händelser däremellan spelas upp igen idempotent.
+        long offset;
+        synchronized (RENTAL_LOCK) {
+            offset = RENTAL_JOURNAL.length();
+            eventsSinceCheckpoint.set(0);
+        }
+        Iterable<Rental> snapshot = rentals.get();
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CHECKPOINT_EXECUTOR.execute(() -> {
+            try {
+                result.complete(writeCheckpoint(snapshot, offset));
+            } catch (RuntimeException e) {
+                System.err.println("FEL: Checkpoint misslyckades. " + e.getMessage());
+                result.complete(false);
+            } finally {
+                checkpointRunning.set(false);
+            }
+        });
+        return result;
+    }
+
+    private static boolean writeCheckpoint(Iterable<Rental> rentals, long offset) {
+        // Båda bilderna skrivs och synkas (fil och katalog) innan journalen får kortas
+        if (!RENTAL_CHECKPOINT.write(rentals, offset)) return false;
+        // Den binära bilden måste gälla samma offset som checkpointen; annars får den inte finnas kvar.
+        // En gammal bild som överlever en kompaktering skulle peka in i fel journal.
+        if (!RENTAL_SNAPSHOT.write(rentals, offset) && !RENTAL_SNAPSHOT.delete()) return false;
+
+        synchronized (RENTAL_LOCK) {
+            // Peka om bilden mot loggens början innan loggen kortas. Kraschar vi emellan
+            // spelas hela den gamla loggen upp, vilket är ofarligt eftersom uppspelningen är idempotent.
+            if (!RENTAL_CHECKPOINT.rewriteOffset(0L)) return false;
+            if (!RENTAL_SNAPSHOT.rewriteOffset(0L) && !RENTAL_SNAPSHOT.delete()) return false;
+            return RENTAL_JOURNAL.compact(offset);
+        }
     }
 
     /**
      * Generisk metod för att spara ett objekt till en JSON-fil.
      * @param object Objektet att spara.
+     * @param type Typinformation för Gson.
      * @param filename Filnamnet.
      * @param <T> Typen av objektet.
      * @return true om sparning lyckades, annars false.
      */
-    private static <T> boolean saveObject(T object, String filename) {
-        try (FileWriter writer = new FileWriter(filename)) {
-
-            // Anpassad serialisering: Tvinga in "itemType" fältet för Items
-            if (object instanceof List) {
-                List<?> list = (List<?>) object;
-                if (!list.isEmpty() && list.get(0) instanceof Item) {
-                    List<JsonElement> jsonItems = new ArrayList<>();
-                    for (Object itemObj : list) {
-                        JsonObject jsonItem = GSON.toJsonTree(itemObj).getAsJsonObject();
-                        if (itemObj instanceof Scooter) {
-                            jsonItem.addProperty("itemType", "Scooter");
-                        } else if (itemObj instanceof Sled) {
-                            jsonItem.addProperty("itemType", "Sled");
-                        }
-                        jsonItems.add(jsonItem);
-                    }
-                    GSON.toJson(jsonItems, writer);
-                    return true;
-                }
-            }
-
-            // Standard serialisering för Member och Rental (GSON hanterar PricePolicy via adaptern)
-            GSON.toJson(object, writer);
+    private static <T> boolean saveObject(T object, Type type, String filename) {
+        // Strömmas direkt till filen via adaptrarna; ingen JsonElement-kopia av hela listan byggs
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(filename), StandardCharsets.UTF_8)) {
+            GSON.toJson(object, type, GSON.newJsonWriter(writer));
             return true;
-        } catch (IOException e) {
+        } catch (IOException | JsonIOException e) {
             System.err.println("FEL: Kunde inte spara till filen " + filename + ". " + e.getMessage());
             return false; // Returnera false vid fel
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package se.scooterrental.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Radavgränsad JSON (NDJSON): en kompakt JSON-post per rad.
+ * Till skillnad från en JSON-array kan filen läsas post för post och delas upp i bitar
+ * som tolkas parallellt, och nya poster kan läggas sist utan att resten skrivs om.
+ */
+class NdjsonFile {
+
+    // Mindre filer än så tolkas sekventiellt; trådstarten kostar mer än den sparar
+    private static final long PARALLEL_THRESHOLD_BYTES = 1L << 20;
+    private static final long MIN_CHUNK_BYTES = 256L << 10;
+
+    /**
+     * En tolkad bit av filen. Varningar för trasiga rader sparas med radnummer inom biten
+     * och skrivs ut först när bitens första rad i filen är känd.
+     */
+    private static final class Chunk<T> {
+        final List<T> records = new ArrayList<>();
+        final List<Integer> badLines = new ArrayList<>();
+        final List<String> badMessages = new ArrayList<>();
+        int lines;
+    }
+
+    private final Path path;
+    private final Gson gson;
+
+    NdjsonFile(Path path, Gson gson) {
+        this.path = path;
+        this.gson = gson;
+    }
+
+    /**
+     * Läser alla poster i filordning. Stora filer delas vid radbrytningar och tolkas parallellt.
+     * Trasiga rader hoppas över med en varning.
+     * @param elementType Postens typ.
+     */
+    <T> List<T> read(Type elementType) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < PARALLEL_THRESHOLD_BYTES || size > Integer.MAX_VALUE) {
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    return readLines(reader, elementType);
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int chunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 2L, size / MIN_CHUNK_BYTES));
+            int[] bounds = chunkBounds(buffer, (int) size, chunks);
+
+            // Varje bit avkodas och tolkas för sig; resultaten sätts ihop i filordning
+            List<Chunk<T>> parts = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> this.<T>parseChunk(buffer, bounds[i], bounds[i + 1], elementType))
+                    .collect(Collectors.toList());
+
+            List<T> result = new ArrayList<>();
+            int firstLine = 0;
+            for (Chunk<T> part : parts) {
+                for (int i = 0; i < part.badLines.size(); i++) {
+                    warnBadLine(firstLine + part.badLines.get(i), part.badMessages.get(i));
+                }
+                result.addAll(part.records);
+                firstLine += part.lines;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Lägger posterna sist i filen, en per rad, och synkar innan anropet returnerar.
+     * Saknar filen avslutande radbrytning (en halvskriven rad) börjar tillägget på en ny rad,
+     * så att bara den trasiga raden hoppas över vid inläsning. Misslyckas skrivningen kortas
+     * filen tillbaka till sin tidigare längd.
+     * @return true om posterna nått disken, annars false.
+     */
+    boolean append(List<?> records, Type elementType) {
+        StringBuilder lines = new StringBuilder();
+        for (Object record : records) {
+            lines.append(gson.toJson(record, elementType)).append('\n');
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            try {
+                if (size > 0) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    channel.read(last, size - 1);
+                    if (last.get(0) != '\n') lines.insert(0, '\n');
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                channel.position(size);
+                while (bytes.hasRemaining()) channel.write(bytes);
+                channel.force(false);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                channel.truncate(size);
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("FEL: Kunde inte lägga till i " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Skriver posterna, en per rad, till en redan öppnad ström (en .tmp-fil som sedan byts in).
+     */
+    <T> void writeTo(Writer writer, List<T> records, Type elementType) throws IOException {
+        for (T record : records) {
+            gson.toJson(record, elementType, writer);
+            writer.write('\n');
+        }
+    }
+
+    private <T> List<T> readLines(BufferedReader reader, Type elementType) throws IOException {
+        Chunk<T> chunk = readChunk(reader, elementType);
+        for (int i = 0; i < chunk.badLines.size(); i++) {
+            warnBadLine(chunk.badLines.get(i), chunk.badMessages.get(i));
+        }
+        return chunk.records;
+    }
+
+    private <T> Chunk<T> readChunk(BufferedReader reader, Type elementType) throws IOException {
+        Chunk<T> chunk = new Chunk<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            chunk.lines++;
+            if (line.isBlank()) continue;
+            try {
+                chunk.records.add(gson.fromJson(line, elementType));
+            } catch (RuntimeException e) {
+                // En halvskriven sista rad ska inte stoppa inläsningen
+                chunk.badLines.add(chunk.lines);
+                chunk.badMessages.add(e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    private <T> Chunk<T> parseChunk(MappedByteBuffer buffer, int start, int end, Type elementType) {
+        byte[] bytes = new byte[end - start];
+        buffer.slice(start, end - start).get(bytes);
+        try (BufferedReader reader = new BufferedReader(new StringReader(new String(bytes, StandardCharsets.UTF_8)))) {
+            return readChunk(reader, elementType);
+        } catch (IOException e) {
+            throw new JsonParseException("Kunde inte läsa " + path + ". " + e.getMessage(), e);
+        }
+    }
+
+    private void warnBadLine(int lineNumber, String message) {
+        System.err.println("VARNING: Hoppar över trasig rad " + lineNumber + " i " + path + ". " + message);
+    }
+
+    /**
+     * Delar bufferten i ungefär lika stora bitar som alla slutar direkt efter en radbrytning.
+     */
+    private static int[] chunkBounds(MappedByteBuffer buffer, int size, int chunks) {
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int target = size / chunks;
+        int position = 0;
+        for (int i = 1; i < chunks; i++) {
+            position = Math.max(position, i * target);
+            while (position < size && buffer.get(position) != '\n') position++;
+            if (position >= size) break;
+            position++; // Biten börjar efter radbrytningen
+            bounds.add(position);
+        }
+        bounds.add(size);
+        return bounds.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+}
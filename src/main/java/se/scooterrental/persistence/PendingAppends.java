@@ -0,0 +1,73 @@
+package se.scooterrental.persistence;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nya poster som väntar på att läggas till sist i en NDJSON-fil.
+ * En köad post behöver inte läggas till om en hel skrivning av filen påbörjats efter att den
+ * köades, eftersom den skrivningens ögonblicksbild redan innehåller posten. Därför räknas en
+ * generation upp innan varje hel skrivning tar sin bild, och den senaste som nått disken noteras.
+ */
+final class PendingAppends {
+
+    private static final class Entry {
+        final Object record;
+        final long generation;
+
+        Entry(Object record, long generation) {
+            this.record = record;
+            this.generation = generation;
+        }
+    }
+
+    final String file;
+    final Type elementType;
+    // Räknas upp innan en hel skrivning tar sin ögonblicksbild
+    private final AtomicLong started = new AtomicLong();
+    // Högsta generationen vars hela skrivning nått disken
+    private final AtomicLong covered = new AtomicLong();
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+    PendingAppends(String file, Type elementType) {
+        this.file = file;
+        this.elementType = elementType;
+    }
+
+    /**
+     * Anropas innan en hel skrivning av filen tar sin ögonblicksbild.
+     * @return Generationen som skickas till {@link #fullWriteDone(long)}.
+     */
+    long beginFullWrite() {
+        return started.incrementAndGet();
+    }
+
+    void fullWriteDone(long generation) {
+        covered.accumulateAndGet(generation, Math::max);
+    }
+
+    /**
+     * Köar en post. Posten måste redan finnas i minnet, så att varje senare ögonblicksbild har den.
+     * @param record En fristående kopia; serialiseras först när kön töms.
+     */
+    void add(Object record) {
+        queue.add(new Entry(record, started.get()));
+    }
+
+    /**
+     * Tömmer kön.
+     * @return Posterna som inte redan finns i en hel skrivning som nått disken, i köordning.
+     */
+    List<Object> drain() {
+        List<Object> records = new ArrayList<>();
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            if (covered.get() <= entry.generation) records.add(entry.record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,136 @@
+package se.scooterrental.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import se.scooterrental.model.Rental;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kompakt ögonblicksbild (checkpoint) av alla uthyrningar plus den position i journalen
+ * som bilden motsvarar. Vid uppstart läses bilden och bara journalens svans spelas upp.
+ *
+ * Filformat: första raden är ett huvud med fast bredd som innehåller journal-offset,
+ * andra raden är hela listan som kompakt JSON. Huvudet kan därför skrivas om på plats
+ * utan att listan behöver serialiseras igen.
+ */
+class RentalCheckpoint {
+
+    private static final String HEADER_PREFIX = "CHECKPOINT v1 offset=";
+    private static final String HEADER_FORMAT = HEADER_PREFIX + "%019d";
+    private static final Type LIST_TYPE = new TypeToken<List<Rental>>() {}.getType();
+
+    /**
+     * Innehållet i en inläst checkpoint.
+     */
+    static final class Snapshot {
+        final List<Rental> rentals;
+        final long logOffset;
+
+        Snapshot(List<Rental> rentals, long logOffset) {
+            this.rentals = rentals;
+            this.logOffset = logOffset;
+        }
+    }
+
+    private final Path path;
+    private final Gson gson;
+
+    RentalCheckpoint(Path path, Gson gson) {
+        this.path = path;
+        this.gson = gson;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Skriver en ny checkpoint till en temporär fil och byter sedan ut den gamla atomärt.
+     * När metoden returnerar true har både filen och namnbytet synkats till disk.
+     * @param rentals Uthyrningarna som bilden ska innehålla; itereras en gång.
+     * @param logOffset Journalens längd när listan kopierades.
+     * @return true om bilden skrevs, annars false.
+     */
+    boolean write(Iterable<Rental> rentals, long logOffset) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(String.format(HEADER_FORMAT, logOffset));
+            writer.newLine();
+            // Posterna skrivs en i taget; listan behöver aldrig finnas i minnet i sin helhet
+            JsonWriter json = gson.newJsonWriter(writer);
+            json.beginArray();
+            for (Rental rental : rentals) {
+                gson.toJson(rental, Rental.class, json);
+            }
+            json.endArray();
+            json.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("FEL: Kunde inte skriva checkpoint " + path + ". " + e.getMessage());
+            return false;
+        }
+        // Innehållet måste nå disken före namnbytet; annars kan en krasch lämna en tom bild
+        // på plats medan journalen redan är kompakterad
+        if (!DataHandler.force(tmp)) return false;
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return DataHandler.forceDirectory(path);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte byta ut checkpoint " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Läser checkpointen.
+     * @return Bilden, eller null om filen saknas eller är trasig (då används rentals.json istället).
+     */
+    Snapshot read() {
+        if (!exists()) return null;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith(HEADER_PREFIX)) {
+                System.err.println("VARNING: Checkpoint " + path + " saknar giltigt huvud. Ignoreras.");
+                return null;
+            }
+            long offset = Long.parseLong(header.substring(HEADER_PREFIX.length()));
+            List<Rental> rentals = gson.fromJson(reader, LIST_TYPE);
+            return new Snapshot(rentals != null ? rentals : new ArrayList<>(), offset);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("VARNING: Kunde inte läsa checkpoint " + path + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Skriver om huvudet på plats. Används vid kompaktering för att peka om bilden mot
+     * början av journalen innan journalen kortas.
+     * @param logOffset Den nya positionen.
+     * @return true om huvudet skrevs, annars false.
+     */
+    boolean rewriteOffset(long logOffset) {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(0);
+            file.write(String.format(HEADER_FORMAT, logOffset).getBytes(StandardCharsets.UTF_8));
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte uppdatera checkpoint " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package se.scooterrental.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import se.scooterrental.model.Rental;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal för uthyrningar.
+ * Varje start/avslut skrivs som en kompakt JSON-rad i slutet av loggfilen,
+ * så att en utcheckning kostar lika mycket oavsett hur stor historiken är.
+ * Vid start spelas loggen upp ovanpå den senaste checkpointen (eller rentals.json),
+ * med början från den byte-position som checkpointen motsvarar.
+ * Loggen hålls öppen mellan händelserna; anroparen serialiserar append, compact och close
+ * (DataHandler håller sitt journallås).
+ */
+class RentalJournal {
+
+    static final String START = "START";
+    static final String END = "END";
+
+    private static final String EVENT_FIELD = "event";
+    private static final String RENTAL_FIELD = "rental";
+
+    private final Path path;
+    private final Gson gson;
+    // Öppnas vid första append och stängs när loggen byts ut vid kompaktering
+    private FileChannel channel;
+
+    RentalJournal(Path path, Gson gson) {
+        this.path = path;
+        this.gson = gson;
+    }
+
+    /**
+     * Lägger till en händelse sist i loggen och synkar den till disk innan anropet returnerar.
+     * @param event START eller END.
+     * @param rental Uthyrningens tillstånd efter händelsen.
+     * @return true om raden skrevs och nått disken, annars false.
+     */
+    boolean append(String event, Rental rental) {
+        JsonObject record = new JsonObject();
+        record.addProperty(EVENT_FIELD, event);
+        record.add(RENTAL_FIELD, gson.toJsonTree(rental));
+        ByteBuffer line = ByteBuffer.wrap((gson.toJson(record) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (line.hasRemaining()) channel.write(line);
+            // Bara innehållet behöver synkas; storleken följer med, övriga metadata spelar ingen roll
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte skriva till journalen " + path + ". " + e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Stänger loggen. Nästa append öppnar den igen.
+     */
+    void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("VARNING: Kunde inte stänga journalen " + path + ". " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Spelar upp loggen ovanpå en redan inläst lista, från en given byte-position.
+     * Uppspelningen är idempotent: en START för ett ID som redan finns ignoreras
+     * och en END ersätter uthyrningen med samma ID. Därför är det ofarligt om
+     * loggen innehåller händelser som redan finns i den inlästa listan.
+     * @param rentals Listan som uppdateras på plats.
+     * @param fromOffset Byte-position att börja läsa från (0 = hela loggen).
+     * @return Antal uppspelade händelser.
+     */
+    int replay(List<Rental> rentals, long fromOffset) {
+        if (!Files.exists(path)) return 0;
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < rentals.size(); i++) {
+            String id = rentals.get(i).getId();
+            if (id != null) positions.put(id, i);
+        }
+
+        int replayed = 0;
+        int lineNumber = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (fromOffset > channel.size()) {
+                // Checkpointen pekar förbi slutet; loggen har bytts ut utanför appen. Läs allt.
+                System.err.println("VARNING: Journal-offset " + fromOffset + " är större än loggen. Spelar upp hela loggen.");
+                fromOffset = 0;
+            }
+            channel.position(fromOffset);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                    String event = record.get(EVENT_FIELD).getAsString();
+                    Rental rental = gson.fromJson(record.get(RENTAL_FIELD), Rental.class);
+                    apply(rentals, positions, event, rental);
+                    replayed++;
+                } catch (RuntimeException e) {
+                    // En halvskriven sista rad (t.ex. efter strömavbrott) ska inte stoppa uppstarten
+                    System.err.println("VARNING: Hoppar över trasig journalrad " + lineNumber + ". " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte läsa journalen " + path + ". " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    /**
+     * @return Loggens nuvarande längd i byte (0 om den saknas).
+     */
+    long length() {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void apply(List<Rental> rentals, Map<String, Integer> positions, String event, Rental rental) {
+        String id = rental.getId();
+        Integer position = id != null ? positions.get(id) : null;
+
+        if (START.equals(event)) {
+            if (position == null) {
+                if (id != null) positions.put(id, rentals.size());
+                rentals.add(rental);
+            }
+        } else if (END.equals(event)) {
+            if (position != null) {
+                rentals.set(position, rental);
+            } else {
+                if (id != null) positions.put(id, rentals.size());
+                rentals.add(rental);
+            }
+        }
+    }
+
+    /**
+     * Kortar loggen så att bara händelserna efter en checkpoint finns kvar.
+     * Svansen kopieras till en temporär fil som sedan ersätter loggen atomärt.
+     * @param fromOffset Position där svansen börjar.
+     * @return true om loggen kompakterades, annars false.
+     */
+    boolean compact(long fromOffset) {
+        if (!Files.exists(path)) return true;
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = Math.min(fromOffset, source.size());
+            long remaining = source.size() - position;
+            while (remaining > 0) {
+                long copied = source.transferTo(position, remaining, target);
+                position += copied;
+                remaining -= copied;
+            }
+            target.force(true);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte kompaktera journalen " + path + ". " + e.getMessage());
+            return false;
+        }
+
+        // Den öppna kanalen pekar på den gamla filen efter bytet
+        close();
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return DataHandler.forceDirectory(path);
+        } catch (IOException e) {
+            System.err.println("FEL: Kunde inte byta ut journalen " + path + ". " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package se.scooterrental.persistence;
+
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Samlar ändringar i medlemmar och items och sparar dem i en enda flush.
+ * Filerna skrivs i ordningen medlemmar, items och byts in tillsammans,
+ * så att en krasch aldrig lämnar en fil ny och en annan gammal.
+ * Uthyrningarna ingår inte: de lagras i journalen och checkpointen.
+ * Skapas via {@link DataHandler#beginUnitOfWork()}.
+ */
+public final class UnitOfWork {
+
+    Supplier<List<Member>> members;
+    Supplier<List<Item>> items;
+    private final List<Runnable> onCommitted = new ArrayList<>();
+
+    UnitOfWork() {
+    }
+
+    /**
+     * @param members Ger medlemslistan; anropas först när flushen körs.
+     */
+    public UnitOfWork members(Supplier<List<Member>> members) {
+        this.members = members;
+        return this;
+    }
+
+    /**
+     * @param items Ger lagret; anropas först när flushen körs.
+     */
+    public UnitOfWork items(Supplier<List<Item>> items) {
+        this.items = items;
+        return this;
+    }
+
+    /**
+     * Registrerar en åtgärd som körs (på skrivtråden) när alla filer har bytts in.
+     */
+    public UnitOfWork onCommitted(Runnable action) {
+        onCommitted.add(action);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return members == null && items == null;
+    }
+
+    /**
+     * Köar flushen. Enheter med samma filuppsättning som köas i snabb följd slås ihop till en skrivning.
+     * @return Future som blir true när alla filer nått disken, annars false.
+     */
+    public CompletableFuture<Boolean> commit() {
+        if (isEmpty()) return CompletableFuture.completedFuture(true);
+        return DataHandler.commit(this).thenApply(ok -> {
+            if (ok) onCommitted.forEach(Runnable::run);
+            return ok;
+        });
+    }
+}
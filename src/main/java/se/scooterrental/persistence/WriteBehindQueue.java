@@ -0,0 +1,93 @@
+package se.scooterrental.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Write-behind-kö för hela filer.
+ * Sparbegäranden per fil slås ihop: första begäran schemalägger en skrivning efter en kort fördröjning,
+ * och efterföljande begäranden före dess ersätter bara vad som ska skrivas. En skur av ändringar
+ * blir alltså en enda skrivning, senast {@code delayMs} efter den första begäran.
+ * Alla skrivningar sker på samma bakgrundstråd, så två skrivningar till samma fil kan aldrig krocka.
+ */
+class WriteBehindQueue {
+
+    private static final class Pending {
+        BooleanSupplier write;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+    }
+
+    private final long delayMs;
+    private final ScheduledExecutorService writer;
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    WriteBehindQueue(long delayMs) {
+        this.delayMs = delayMs;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DataHandler-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Köar en skrivning av en fil.
+     * @param file Filen; begäranden för samma fil slås ihop.
+     * @param write Skrivningen. Bör läsa sina data först när den körs, så att senaste tillståndet sparas.
+     * @return Future som blir true när data nått disken, false om skrivningen misslyckades.
+     */
+    synchronized CompletableFuture<Boolean> submit(String file, BooleanSupplier write) {
+        Pending batch = pending.get(file);
+        if (batch == null) {
+            batch = new Pending();
+            pending.put(file, batch);
+            writer.schedule(() -> flushFile(file), delayMs, TimeUnit.MILLISECONDS);
+        }
+        batch.write = write;
+        return batch.done;
+    }
+
+    /**
+     * Skriver alla köade filer direkt och väntar tills de är klara. Används vid avslut.
+     */
+    void flush() {
+        try {
+            writer.submit(() -> {
+                List<String> files;
+                synchronized (this) {
+                    files = new ArrayList<>(pending.keySet());
+                }
+                files.forEach(this::flushFile);
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("FEL: Kunde inte tömma skrivkön. " + e.getMessage());
+        }
+    }
+
+    private void flushFile(String file) {
+        Pending batch;
+        synchronized (this) {
+            batch = pending.remove(file);
+        }
+        if (batch == null) return; // Redan skriven av flush()
+
+        boolean ok;
+        try {
+            ok = batch.write.getAsBoolean();
+        } catch (RuntimeException e) {
+            System.err.println("FEL: Kunde inte spara " + file + ". " + e.getMessage());
+            ok = false;
+        }
+        batch.done.complete(ok);
+    }
+}
@@ -0,0 +1,123 @@
+package se.scooterrental.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * BK-träd över strängar med Levenshtein-avstånd, för felstavningstolerant uppslag.
+ * Varje nod är en nyckel med de värden som har den; barnen sorteras efter avståndet till
+ * föräldern, så en sökning med maxavstånd k bara behöver gå ner i barn inom d-k..d+k.
+ * Nycklar tas aldrig bort ur trädet; en nyckel utan värden hoppas bara över.
+ */
+final class BkTree<V> {
+
+    private static final class Node<V> {
+        final String key;
+        final Set<V> values = new LinkedHashSet<>();
+        final Map<Integer, Node<V>> children = new HashMap<>();
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    // Klockan läses bara var n:te nod; System.nanoTime är inte gratis
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private Node<V> root;
+
+    void add(String key, V value) {
+        if (root == null) {
+            root = new Node<>(key);
+            root.values.add(value);
+            return;
+        }
+        Node<V> node = root;
+        while (true) {
+            int distance = distance(key, node.key);
+            if (distance == 0) {
+                node.values.add(value);
+                return;
+            }
+            Node<V> child = node.children.get(distance);
+            if (child == null) {
+                Node<V> created = new Node<>(key);
+                created.values.add(value);
+                node.children.put(distance, created);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    void remove(String key, V value) {
+        Node<V> node = root;
+        while (node != null) {
+            int distance = distance(key, node.key);
+            if (distance == 0) {
+                node.values.remove(value);
+                return;
+            }
+            node = node.children.get(distance);
+        }
+    }
+
+    /**
+     * Hittar alla värden vars nyckel ligger inom maxavståndet från söksträngen.
+     * @param consumer Får varje värde och nyckelns avstånd.
+     * @param deadlineNanos Tidpunkt (System.nanoTime) då sökningen avbryts.
+     * @return true om hela trädet hann genomsökas.
+     */
+    boolean search(String query, int maxDistance, long deadlineNanos, ObjIntConsumer<V> consumer) {
+        if (root == null) return true;
+        Deque<Node<V>> pending = new ArrayDeque<>();
+        pending.push(root);
+        int visited = 0;
+        while (!pending.isEmpty()) {
+            if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadlineNanos) {
+                return false;
+            }
+            Node<V> node = pending.pop();
+            int distance = distance(query, node.key);
+            if (distance <= maxDistance) {
+                for (V value : node.values) {
+                    consumer.accept(value, distance);
+                }
+            }
+            for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+                Node<V> child = node.children.get(d);
+                if (child != null) pending.push(child);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Levenshtein-avstånd med två rader.
+     */
+    static int distance(String a, String b) {
+        if (a.equals(b)) return 0;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,58 @@
+package se.scooterrental.service;
+
+/**
+ * Inkrementellt uppdaterad statistik för Dashboard.
+ * Tjänsterna rapporterar varje tillståndsövergång hit (uthyrning avslutad, item uthyrt/återlämnat,
+ * medlem tillagd/borttagen), så att läsningarna är O(1) istället för en genomsökning per sekund.
+ */
+public class DashboardStats {
+
+    private volatile double totalRevenue;
+    private volatile long itemCount;
+    private volatile long rentedCount;
+    private volatile long memberCount;
+
+    // --- Uppdateringar från tjänsterna ---
+
+    synchronized void revenueLoaded(double revenue) {
+        this.totalRevenue = revenue;
+    }
+
+    synchronized void revenueAdded(double amount) {
+        this.totalRevenue += amount;
+    }
+
+    synchronized void itemsLoaded(long total, long rented) {
+        this.itemCount = total;
+        this.rentedCount = rented;
+    }
+
+    synchronized void itemAdded(boolean available) {
+        this.itemCount++;
+        if (!available) this.rentedCount++;
+    }
+
+    synchronized void availabilityChanged(boolean available) {
+        this.rentedCount += available ? -1 : 1;
+    }
+
+    synchronized void membersLoaded(long count) {
+        this.memberCount = count;
+    }
+
+    synchronized void memberAdded() {
+        this.memberCount++;
+    }
+
+    synchronized void memberRemoved() {
+        this.memberCount--;
+    }
+
+    // --- Läsningar (O(1)) ---
+
+    public double getTotalRevenue() { return totalRevenue; }
+    public long getItemCount() { return itemCount; }
+    public long getRentedCount() { return rentedCount; }
+    public long getAvailableCount() { return itemCount - rentedCount; }
+    public long getMemberCount() { return memberCount; }
+}
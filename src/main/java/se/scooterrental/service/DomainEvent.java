@@ -0,0 +1,84 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Member;
+import se.scooterrental.model.Rental;
+
+/**
+ * En domänhändelse som publiceras av tjänsterna när tillståndet ändras.
+ * Vyerna prenumererar och uppdaterar bara det som berörs, istället för att polla.
+ */
+public final class DomainEvent {
+
+    public enum Type {
+        RENTAL_STARTED,
+        RENTAL_ENDED,
+        ITEM_ADDED,
+        ITEM_UPDATED,
+        MEMBER_ADDED,
+        MEMBER_UPDATED,
+        MEMBER_REMOVED
+    }
+
+    private final Type type;
+    private final Rental rental;
+    private final Item item;
+    private final Member member;
+
+    private DomainEvent(Type type, Rental rental, Item item, Member member) {
+        this.type = type;
+        this.rental = rental;
+        this.item = item;
+        this.member = member;
+    }
+
+    public static DomainEvent rentalStarted(Rental rental) {
+        return new DomainEvent(Type.RENTAL_STARTED, rental, null, null);
+    }
+
+    public static DomainEvent rentalEnded(Rental rental) {
+        return new DomainEvent(Type.RENTAL_ENDED, rental, null, null);
+    }
+
+    public static DomainEvent itemAdded(Item item) {
+        return new DomainEvent(Type.ITEM_ADDED, null, item, null);
+    }
+
+    public static DomainEvent itemUpdated(Item item) {
+        return new DomainEvent(Type.ITEM_UPDATED, null, item, null);
+    }
+
+    public static DomainEvent memberAdded(Member member) {
+        return new DomainEvent(Type.MEMBER_ADDED, null, null, member);
+    }
+
+    public static DomainEvent memberUpdated(Member member) {
+        return new DomainEvent(Type.MEMBER_UPDATED, null, null, member);
+    }
+
+    public static DomainEvent memberRemoved(Member member) {
+        return new DomainEvent(Type.MEMBER_REMOVED, null, null, member);
+    }
+
+    public Type getType() { return type; }
+    public Rental getRental() { return rental; }
+    public Item getItem() { return item; }
+    public Member getMember() { return member; }
+
+    public boolean isRentalEvent() {
+        return type == Type.RENTAL_STARTED || type == Type.RENTAL_ENDED;
+    }
+
+    public boolean isItemEvent() {
+        return type == Type.ITEM_ADDED || type == Type.ITEM_UPDATED;
+    }
+
+    public boolean isMemberEvent() {
+        return type == Type.MEMBER_ADDED || type == Type.MEMBER_UPDATED || type == Type.MEMBER_REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        return "DomainEvent[" + type + "]";
+    }
+}
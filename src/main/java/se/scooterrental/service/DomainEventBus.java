@@ -0,0 +1,34 @@
+package se.scooterrental.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Enkel synkron händelsebuss som delas av tjänsterna.
+ * Händelser levereras på den tråd som publicerar dem; UI-prenumeranter
+ * ansvarar själva för att flytta arbetet till FX-tråden.
+ */
+public class DomainEventBus {
+
+    private final List<Consumer<DomainEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Consumer<DomainEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<DomainEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void publish(DomainEvent event) {
+        for (Consumer<DomainEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                // En trasig prenumerant får inte stoppa övriga eller tjänsten som publicerade
+                System.err.println("FEL: Prenumerant kastade undantag för " + event + ". " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,27 +4,198 @@ import se.scooterrental.model.Item;
 import se.scooterrental.model.Scooter;
 import se.scooterrental.model.Sled;
 import se.scooterrental.persistence.DataHandler;
+import se.scooterrental.persistence.UnitOfWork;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class Inventory {
+
+    /**
+     * Kombinerat filter för lagret. Attributen AND:as; modellnamnen OR:as.
+     * Ett filter på elstart eller motorstorlek gäller bara scootrar, ett på maxvikt bara slädar.
+     */
+    public static final class ItemFilter {
+        public enum Type { ALL, SCOOTER, SLED }
+
+        private Type type = Type.ALL;
+        private boolean onlyAvailable;
+        private Boolean electricStart;
+        private int minDisplacement = Integer.MIN_VALUE;
+        private int maxDisplacement = Integer.MAX_VALUE;
+        private int minMaxWeight = Integer.MIN_VALUE;
+        private int maxMaxWeight = Integer.MAX_VALUE;
+        private final Set<String> models = new HashSet<>();
+
+        /**
+         * @param typeFilter "Scooter", "Sled" eller något annat (t.ex. "Alla") för alla typer.
+         */
+        public ItemFilter type(String typeFilter) {
+            if ("Scooter".equals(typeFilter)) this.type = Type.SCOOTER;
+            else if ("Sled".equals(typeFilter)) this.type = Type.SLED;
+            else this.type = Type.ALL;
+            return this;
+        }
+
+        public ItemFilter onlyAvailable(boolean onlyAvailable) {
+            this.onlyAvailable = onlyAvailable;
+            return this;
+        }
+
+        public ItemFilter electricStart(boolean electricStart) {
+            this.electricStart = electricStart;
+            return this;
+        }
+
+        /**
+         * Motorstorlek i cc, båda gränserna inklusive.
+         */
+        public ItemFilter displacement(int min, int max) {
+            this.minDisplacement = min;
+            this.maxDisplacement = max;
+            return this;
+        }
+
+        /**
+         * Slädens maxvikt i kg, båda gränserna inklusive.
+         */
+        public ItemFilter maxWeight(int min, int max) {
+            this.minMaxWeight = min;
+            this.maxMaxWeight = max;
+            return this;
+        }
+
+        /**
+         * Lägger till ett modellnamn (exakt, skiftlägesokänsligt); flera namn ger träff på något av dem.
+         */
+        public ItemFilter model(String name) {
+            models.add(NgramIndex.lower(name));
+            return this;
+        }
+
+        public Type getType() { return type; }
+        public boolean isOnlyAvailable() { return onlyAvailable; }
+        public Boolean getElectricStart() { return electricStart; }
+        public int getMinDisplacement() { return minDisplacement; }
+        public int getMaxDisplacement() { return maxDisplacement; }
+        public int getMinMaxWeight() { return minMaxWeight; }
+        public int getMaxMaxWeight() { return maxMaxWeight; }
+        public Set<String> getModels() { return Collections.unmodifiableSet(models); }
+
+        boolean hasDisplacementRange() {
+            return minDisplacement != Integer.MIN_VALUE || maxDisplacement != Integer.MAX_VALUE;
+        }
+
+        boolean hasMaxWeightRange() {
+            return minMaxWeight != Integer.MIN_VALUE || maxMaxWeight != Integer.MAX_VALUE;
+        }
+
+        /**
+         * Avgör om ett enskilt item matchar filtret, med samma regler som indexet.
+         */
+        public boolean matches(Item item) {
+            if (type == Type.SCOOTER && !(item instanceof Scooter)) return false;
+            if (type == Type.SLED && !(item instanceof Sled)) return false;
+            if (onlyAvailable && !item.isAvailable()) return false;
+            if (electricStart != null || hasDisplacementRange()) {
+                if (!(item instanceof Scooter)) return false;
+                Scooter scooter = (Scooter) item;
+                if (electricStart != null && scooter.hasElectricStart() != electricStart) return false;
+                int cc = scooter.getEngineDisplacement();
+                if (cc < minDisplacement || cc > maxDisplacement) return false;
+            }
+            if (hasMaxWeightRange()) {
+                if (!(item instanceof Sled)) return false;
+                int kg = ((Sled) item).getMaxWeightKg();
+                if (kg < minMaxWeight || kg > maxMaxWeight) return false;
+            }
+            return models.isEmpty() || models.contains(NgramIndex.lower(item.getName()));
+        }
+    }
+
     private List<Item> items;
+    // Primärnyckelindex: itemId -> Item, hålls i synk med listan.
+    // Concurrent eftersom kostnadsmotorn slår upp priser från sin egen tråd.
+    private final Map<String, Item> itemsById = new ConcurrentHashMap<>();
+    // ID:n för uthyrda items; används för att upptäcka övergångar ledig <-> uthyrd.
+    // Concurrent eftersom flera kassor kan hyra ut och lämna tillbaka samtidigt.
+    private final Set<String> rentedItemIds = ConcurrentHashMap.newKeySet();
+    // Position i listan för varje indexerat item; items tas aldrig bort, så positionerna är stabila
+    private final Map<String, Integer> positionsById = new ConcurrentHashMap<>();
+    // Fritextindex över namn, registreringsnummer, motorstorlek och slädtyp
+    private final NgramIndex searchIndex = new NgramIndex();
+    // Bitmappar per attribut (typ, ledig, elstart, motorstorlek, maxvikt, modell) över samma positioner
+    private final ItemAttributeIndex attributeIndex = new ItemAttributeIndex();
+    private final DashboardStats stats;
+    private final DomainEventBus eventBus;
     private AtomicLong nextId;
+    // Räknas upp vid varje ändring; autosave jämför mot senast sparade version
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong savedVersion = new AtomicLong();
 
     public Inventory() {
-        this.items = DataHandler.loadItems();
-        if (this.items == null) {
-            this.items = new java.util.ArrayList<>();
-        }
+        this(new DashboardStats(), new DomainEventBus());
+    }
+
+    public Inventory(DashboardStats stats, DomainEventBus eventBus) {
+        this(DataHandler.loadItems(), stats, eventBus);
+    }
+
+    /**
+     * Skapar lagret från en redan inläst lista (t.ex. från {@link StartupLoader}).
+     */
+    public Inventory(List<Item> loaded, DashboardStats stats, DomainEventBus eventBus) {
+        this.stats = stats;
+        this.eventBus = eventBus;
+        // Copy-on-write: autosave läser en konsistent ögonblicksbild utan att blockera skrivningar
+        this.items = loaded != null ? new CopyOnWriteArrayList<>(loaded) : new CopyOnWriteArrayList<>();
+        buildIndex();
         initializeNextId();
     }
 
+    private void buildIndex() {
+        itemsById.clear();
+        rentedItemIds.clear();
+        positionsById.clear();
+        attributeIndex.clear();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            searchIndex.index(i, searchableTexts(item));
+            attributeIndex.index(i, item);
+            // Vid dubbletter vinner den första, precis som den tidigare linjära sökningen
+            if (itemsById.putIfAbsent(item.getItemId(), item) == null) {
+                positionsById.put(item.getItemId(), i);
+                if (!item.isAvailable()) rentedItemIds.add(item.getItemId());
+            }
+        }
+        stats.itemsLoaded(itemsById.size(), rentedItemIds.size());
+    }
+
+    /**
+     * Jämför itemets tillgänglighet med senast kända och rapporterar en eventuell övergång.
+     * Fångar även fallet där anroparen redan ändrat objektet direkt innan updateItem.
+     */
+    private void syncAvailability(Item item) {
+        // add/remove avgör atomärt vem som rapporterar övergången
+        if (!item.isAvailable()) {
+            if (rentedItemIds.add(item.getItemId())) stats.availabilityChanged(false);
+        } else {
+            if (rentedItemIds.remove(item.getItemId())) stats.availabilityChanged(true);
+        }
+    }
+
     private void initializeNextId() {
         long maxId = items.stream()
                 .map(Item::getItemId)
@@ -39,20 +210,52 @@ public class Inventory {
         return String.valueOf(nextId.getAndIncrement());
     }
 
+    // Ändringar görs under lagrets monitor; händelserna publiceras först när den släppts
     public boolean addItem(Item item) {
-        if (items.stream().anyMatch(i -> i.getItemId().equals(item.getItemId()))) {
-            return false;
+        boolean added;
+        Item copy;
+        boolean onlyChange;
+        long v;
+        synchronized (this) {
+            if (itemsById.containsKey(item.getItemId())) {
+                return false;
+            }
+            int position = items.size();
+            searchIndex.index(position, searchableTexts(item));
+            attributeIndex.index(position, item);
+            positionsById.put(item.getItemId(), position);
+            itemsById.put(item.getItemId(), item);
+            if (!item.isAvailable()) rentedItemIds.add(item.getItemId());
+            stats.itemAdded(item.isAvailable());
+            added = items.add(item);
+            onlyChange = !hasUnsavedChanges();
+            v = version.incrementAndGet();
+            copy = item.copy();
+        }
+        // Är det nya itemet enda osparade ändringen räcker det att lägga det sist i filen
+        if (onlyChange) {
+            DataHandler.appendItemAsync(copy, this::snapshot).thenAccept(ok -> {
+                if (ok) savedVersion.accumulateAndGet(v, Math::max);
+            });
+        } else {
+            saveDataAsync();
         }
-        return items.add(item);
+        eventBus.publish(DomainEvent.itemAdded(item));
+        return added;
     }
 
+    /**
+     * Uppdaterar ett items uppgifter och index. Tillgängligheten kopieras inte från
+     * {@code updatedItem}: den ändras bara av RentalService under itemets lås, så en
+     * redigering som öppnades innan en uthyrning kan inte släppa itemet igen.
+     */
     public boolean updateItem(Item updatedItem) {
-        Optional<Item> existingItemOpt = findItemById(updatedItem.getItemId());
-        if (existingItemOpt.isPresent()) {
-            Item existingItem = existingItemOpt.get();
+        Item existingItem;
+        synchronized (this) {
+            existingItem = itemsById.get(updatedItem.getItemId());
+            if (existingItem == null) return false;
             existingItem.setName(updatedItem.getName());
             existingItem.setCurrentRentalPrice(updatedItem.getCurrentRentalPrice());
-            existingItem.setAvailable(updatedItem.isAvailable());
 
             if (existingItem instanceof Scooter && updatedItem instanceof Scooter) {
                 ((Scooter) existingItem).setEngineDisplacement(((Scooter) updatedItem).getEngineDisplacement());
@@ -62,13 +265,21 @@ public class Inventory {
                 ((Sled) existingItem).setType(((Sled) updatedItem).getType());
                 ((Sled) existingItem).setMaxWeightKg(((Sled) updatedItem).getMaxWeightKg());
             }
-            return true;
+            syncAvailability(existingItem);
+            Integer position = positionsById.get(existingItem.getItemId());
+            if (position != null) {
+                searchIndex.index(position, searchableTexts(existingItem));
+                attributeIndex.index(position, existingItem);
+            }
+            version.incrementAndGet();
         }
-        return false;
+        eventBus.publish(DomainEvent.itemUpdated(existingItem));
+        return true;
     }
 
     public Optional<Item> findItemById(String itemId) {
-        return items.stream().filter(i -> i.getItemId().equals(itemId)).findFirst();
+        if (itemId == null) return Optional.empty();
+        return Optional.ofNullable(itemsById.get(itemId));
     }
 
     public List<Item> getAllItems() {
@@ -76,39 +287,113 @@ public class Inventory {
     }
 
     public List<Item> getAvailableItems() {
-        return items.stream()
-                .filter(Item::isAvailable)
-                .collect(Collectors.toList());
+        return itemsAt(attributeIndex.available());
+    }
+
+    /**
+     * Ögonblicksbild för sparning: en kopia av varje item, tagen under lagrets monitor
+     * så att ingen post kan vara halvt uppdaterad när den skrivs.
+     */
+    public synchronized List<Item> snapshot() {
+        List<Item> copies = new ArrayList<>(items.size());
+        for (Item item : items) {
+            copies.add(item.copy());
+        }
+        return copies;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return true om något ändrats sedan senaste lyckade sparning.
+     */
+    public boolean hasUnsavedChanges() {
+        return version.get() != savedVersion.get();
     }
 
-    public boolean saveData() {
-        return DataHandler.saveItems(items);
+    /**
+     * Tar med lagret i en unit of work. Versionen markeras sparad när enheten committats.
+     */
+    public void enlist(UnitOfWork work) {
+        long v = version.get();
+        work.items(this::snapshot).onCommitted(() -> savedVersion.accumulateAndGet(v, Math::max));
+    }
+
+    /**
+     * Köar en sparning i bakgrunden; skurar av ändringar ger en enda skrivning.
+     * @return Future som blir true när data nått disken.
+     */
+    public CompletableFuture<Boolean> saveDataAsync() {
+        // Versionen läses före bilden (som tas först vid skrivningen), så bilden är minst så ny
+        long v = version.get();
+        return DataHandler.saveItemsAsync(this::snapshot).thenApply(ok -> {
+            if (ok) savedVersion.accumulateAndGet(v, Math::max);
+            return ok;
+        });
     }
 
     // --- SÖKNING OCH STATISTIK ---
 
     public List<Item> searchItems(String query, String typeFilter, boolean onlyAvailable) {
-        String lowerQuery = query.toLowerCase();
+        return searchItems(query, new ItemFilter().type(typeFilter).onlyAvailable(onlyAvailable));
+    }
 
-        return items.stream()
-                .filter(item -> {
-                    if ("Alla".equals(typeFilter)) return true;
-                    if ("Scooter".equals(typeFilter)) return item instanceof Scooter;
-                    if ("Sled".equals(typeFilter)) return item instanceof Sled;
-                    return true;
-                })
-                .filter(item -> !onlyAvailable || item.isAvailable())
-                .filter(item -> {
-                    if (lowerQuery.isEmpty()) return true;
-                    if (item.getName().toLowerCase().contains(lowerQuery)) return true;
-                    if (item instanceof Scooter) {
-                        Scooter s = (Scooter) item;
-                        return String.valueOf(s.getEngineDisplacement()).contains(lowerQuery) ||
-                                s.getLicensePlate().toLowerCase().contains(lowerQuery);
-                    }
-                    return false;
-                })
-                .collect(Collectors.toList());
+    /**
+     * Fritextsökning kombinerad med ett attributfilter. Attributbitmapparna och fritextindexet
+     * delar positioner, så träffarna blir ett snitt av bitmappar innan något item läses.
+     * @param query Söksträngen (tom = alla).
+     */
+    public List<Item> searchItems(String query, ItemFilter filter) {
+        BitSet hits = attributeIndex.search(filter);
+        String lowerQuery = NgramIndex.lower(query);
+        if (!lowerQuery.isEmpty()) hits.and(searchIndex.search(lowerQuery));
+        return itemsAt(hits);
+    }
+
+    private List<Item> itemsAt(BitSet positions) {
+        List<Item> current = items;
+        List<Item> result = new ArrayList<>(positions.cardinality());
+        // Ett item som läggs till just nu kan vara indexerat men ännu inte i listan
+        for (int position = positions.nextSetBit(0); position >= 0 && position < current.size();
+             position = positions.nextSetBit(position + 1)) {
+            result.add(current.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Avgör om ett enskilt item matchar sökningen. Används av vyer för att uppdatera
+     * en enda rad när ett item ändras, istället för att söka om hela lagret.
+     * @param lowerQuery Söksträngen i gemener.
+     */
+    public boolean matchesSearch(Item item, String lowerQuery, String typeFilter, boolean onlyAvailable) {
+        if (!matchesFilters(item, typeFilter, onlyAvailable)) return false;
+        if (lowerQuery.isEmpty()) return true;
+        // Samma fält som fritextindexet
+        return NgramIndex.containsIn(searchableTexts(item), lowerQuery);
+    }
+
+    /**
+     * De fält fritextsökningen täcker, i gemener: namn, registreringsnummer, motorstorlek och slädtyp.
+     */
+    private static String[] searchableTexts(Item item) {
+        if (item instanceof Scooter) {
+            Scooter scooter = (Scooter) item;
+            return new String[] {
+                    NgramIndex.lower(item.getName()), NgramIndex.lower(scooter.getLicensePlate()),
+                    String.valueOf(scooter.getEngineDisplacement())
+            };
+        }
+        if (item instanceof Sled) {
+            return new String[] { NgramIndex.lower(item.getName()), NgramIndex.lower(((Sled) item).getType()) };
+        }
+        return new String[] { NgramIndex.lower(item.getName()) };
+    }
+
+    private static boolean matchesFilters(Item item, String typeFilter, boolean onlyAvailable) {
+        return new ItemFilter().type(typeFilter).onlyAvailable(onlyAvailable).matches(item);
     }
 
     public List<Item> getMostPopularItems(int limit) {
@@ -119,9 +404,9 @@ public class Inventory {
     }
 
     // Statistik för Dashboard
-    public long getTotalCount() { return items.size(); }
-    public long getAvailableCount() { return items.stream().filter(Item::isAvailable).count(); }
-    public long getRentedCount() { return items.stream().filter(i -> !i.isAvailable()).count(); }
+    public long getTotalCount() { return stats.getItemCount(); }
+    public long getAvailableCount() { return stats.getAvailableCount(); }
+    public long getRentedCount() { return stats.getRentedCount(); }
 
     public Map<String, Long> getModelPopularity() {
         return items.stream()
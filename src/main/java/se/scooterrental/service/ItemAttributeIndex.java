@@ -0,0 +1,186 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Scooter;
+import se.scooterrental.model.Sled;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bitmappsindex över lagrets attribut: typ, tillgänglighet, elstart, motorstorlek och
+ * maxvikt i intervall, samt modellnamn. Varje värde har en BitSet över lagrets positioner,
+ * så ett kombinerat filter blir OR inom ett attribut och AND mellan attributen.
+ * Intervallfilter tar hela band direkt; bara banden i intervallets kanter kontrolleras per item.
+ */
+final class ItemAttributeIndex {
+
+    // Bandbredd för motorstorlek (cc) och maxvikt (kg)
+    static final int DISPLACEMENT_BAND = 100;
+    static final int WEIGHT_BAND = 25;
+
+    /**
+     * De värden en position senast indexerades med, för att kunna nollställa rätt bitar.
+     */
+    private static final class Entry {
+        // Vilka band positionen ligger i avgörs av typen, inte av värdet, så att index och unindex alltid matchar
+        boolean scooter;
+        boolean sled;
+        int displacement;
+        int maxWeight;
+        String model;
+    }
+
+    private final BitSet scooters = new BitSet();
+    private final BitSet sleds = new BitSet();
+    private final BitSet available = new BitSet();
+    private final BitSet electricStart = new BitSet();
+    private final TreeMap<Integer, BitSet> displacementBands = new TreeMap<>();
+    private final TreeMap<Integer, BitSet> weightBands = new TreeMap<>();
+    private final Map<String, BitSet> byModel = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+
+    synchronized void clear() {
+        scooters.clear();
+        sleds.clear();
+        available.clear();
+        electricStart.clear();
+        displacementBands.clear();
+        weightBands.clear();
+        byModel.clear();
+        entries.clear();
+    }
+
+    /**
+     * Indexerar ett item på en position, eller indexerar om det efter en ändring.
+     */
+    synchronized void index(int position, Item item) {
+        while (entries.size() <= position) entries.add(null);
+        Entry entry = entries.get(position);
+        if (entry != null) unindex(position, entry);
+        entry = new Entry();
+
+        available.set(position, item.isAvailable());
+        if (item instanceof Scooter) {
+            Scooter scooter = (Scooter) item;
+            scooters.set(position);
+            electricStart.set(position, scooter.hasElectricStart());
+            entry.scooter = true;
+            entry.displacement = scooter.getEngineDisplacement();
+            bits(displacementBands, band(entry.displacement, DISPLACEMENT_BAND)).set(position);
+        } else if (item instanceof Sled) {
+            sleds.set(position);
+            entry.sled = true;
+            entry.maxWeight = ((Sled) item).getMaxWeightKg();
+            bits(weightBands, band(entry.maxWeight, WEIGHT_BAND)).set(position);
+        }
+        entry.model = NgramIndex.lower(item.getName());
+        byModel.computeIfAbsent(entry.model, m -> new BitSet()).set(position);
+        entries.set(position, entry);
+    }
+
+    /**
+     * @return Positionerna som matchar filtret (innan fritextsökningen).
+     */
+    synchronized BitSet search(Inventory.ItemFilter filter) {
+        BitSet hits;
+        if (filter.getType() == Inventory.ItemFilter.Type.SCOOTER) {
+            hits = (BitSet) scooters.clone();
+        } else if (filter.getType() == Inventory.ItemFilter.Type.SLED) {
+            hits = (BitSet) sleds.clone();
+        } else {
+            hits = new BitSet();
+            hits.set(0, entries.size());
+        }
+        if (filter.isOnlyAvailable()) hits.and(available);
+        if (filter.getElectricStart() != null) {
+            hits.and(scooters);
+            if (filter.getElectricStart()) hits.and(electricStart);
+            else hits.andNot(electricStart);
+        }
+        if (filter.hasDisplacementRange()) {
+            hits.and(range(displacementBands, DISPLACEMENT_BAND,
+                    filter.getMinDisplacement(), filter.getMaxDisplacement(), true));
+        }
+        if (filter.hasMaxWeightRange()) {
+            hits.and(range(weightBands, WEIGHT_BAND,
+                    filter.getMinMaxWeight(), filter.getMaxMaxWeight(), false));
+        }
+        if (!filter.getModels().isEmpty()) {
+            BitSet models = new BitSet();
+            for (String model : filter.getModels()) {
+                BitSet bits = byModel.get(NgramIndex.lower(model));
+                if (bits != null) models.or(bits);
+            }
+            hits.and(models);
+        }
+        return hits;
+    }
+
+    /**
+     * @return Positionerna för alla lediga items.
+     */
+    synchronized BitSet available() {
+        return (BitSet) available.clone();
+    }
+
+    /**
+     * OR över banden som överlappar [min, max]. Band helt inom intervallet tas som de är;
+     * kantbanden kontrolleras mot det indexerade värdet.
+     */
+    private BitSet range(TreeMap<Integer, BitSet> bands, int width, int min, int max, boolean scooterBands) {
+        BitSet result = new BitSet();
+        if (bands.isEmpty()) return result;
+        // Under det lägsta bandet finns inga värden; en öppen undre gräns lyfts dit så att band() inte slår runt
+        min = Math.max(min, bands.firstKey());
+        if (min > max) return result;
+        for (Map.Entry<Integer, BitSet> band : bands.subMap(band(min, width), true, band(max, width), true).entrySet()) {
+            int low = band.getKey();
+            long high = (long) low + width - 1;
+            if (low >= min && high <= max) {
+                result.or(band.getValue());
+                continue;
+            }
+            BitSet bits = band.getValue();
+            for (int position = bits.nextSetBit(0); position >= 0; position = bits.nextSetBit(position + 1)) {
+                Entry entry = entries.get(position);
+                int value = scooterBands ? entry.displacement : entry.maxWeight;
+                if (value >= min && value <= max) result.set(position);
+            }
+        }
+        return result;
+    }
+
+    private void unindex(int position, Entry entry) {
+        scooters.clear(position);
+        sleds.clear(position);
+        available.clear(position);
+        electricStart.clear(position);
+        if (entry.scooter) clear(displacementBands, band(entry.displacement, DISPLACEMENT_BAND), position);
+        if (entry.sled) clear(weightBands, band(entry.maxWeight, WEIGHT_BAND), position);
+        BitSet models = byModel.get(entry.model);
+        if (models != null) {
+            models.clear(position);
+            if (models.isEmpty()) byModel.remove(entry.model);
+        }
+    }
+
+    private static int band(int value, int width) {
+        return Math.floorDiv(value, width) * width;
+    }
+
+    private static BitSet bits(Map<Integer, BitSet> bands, int band) {
+        return bands.computeIfAbsent(band, b -> new BitSet());
+    }
+
+    private static void clear(Map<Integer, BitSet> bands, int band, int position) {
+        BitSet bits = bands.get(band);
+        if (bits == null) return;
+        bits.clear(position);
+        if (bits.isEmpty()) bands.remove(band);
+    }
+}
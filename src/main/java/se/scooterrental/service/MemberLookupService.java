@@ -0,0 +1,134 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Member;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Felstavningstolerant medlemsuppslag för kassan.
+ * Först används registrets vanliga sökning (ID och delsträng); räcker inte träffarna
+ * kompletteras de med telefonnummer som slutar på inmatningen, eller med namn inom ett litet
+ * redigeringsavstånd från ett BK-träd över för- och efternamn. Uppslaget har en fast tidsbudget och returnerar det bästa det hunnit hitta.
+ * Trädet hålls i synk via medlemshändelserna på händelsebussen.
+ */
+public class MemberLookupService {
+
+    // Längre än så får ett uppslag per tangenttryck inte ta
+    private static final long TIME_BUDGET_NANOS = 20_000_000L;
+    // Kortare ord ger för många avlägsna träffar för att felstavning ska vara meningsfull
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // Minst fyra siffror (t.ex. numrets sista fyra) innan inmatningen tolkas som telefonnummer
+    private static final Pattern PHONE_QUERY = Pattern.compile("^[+]?[0-9 -]*([0-9][ -]*){4,}$");
+
+    private final MemberRegistry registry;
+    private final BkTree<Member> names = new BkTree<>();
+    // Namnorden varje medlem senast indexerades med, för att kunna ta bort dem vid ändring
+    private final Map<Member, List<String>> indexedNames = new IdentityHashMap<>();
+
+    public MemberLookupService(MemberRegistry registry, DomainEventBus eventBus) {
+        this.registry = registry;
+        // Prenumerera före inläsningen, och under låset, så att ingen ändring däremellan missas
+        synchronized (this) {
+            eventBus.subscribe(this::onEvent);
+            for (Member member : registry.getMembers()) {
+                index(member);
+            }
+        }
+    }
+
+    private synchronized void onEvent(DomainEvent event) {
+        if (!event.isMemberEvent()) return;
+        if (event.getType() == DomainEvent.Type.MEMBER_REMOVED) {
+            unindex(event.getMember());
+        } else {
+            index(event.getMember());
+        }
+    }
+
+    /**
+     * Slår upp medlemmar för en inmatning (namn, del av namn, medlems-ID eller telefonnummer),
+     * med felstavningar. Exakta och delsträngsträffar kommer först, sedan telefonträffar
+     * eller de närmaste felstavade namnen.
+     * @param query Inmatningen.
+     * @param limit Max antal förslag.
+     */
+    public List<Member> lookup(String query, int limit) {
+        String normalized = normalize(query);
+        List<Member> result = new ArrayList<>(registry.searchMembers(normalized, null, limit).getMembers());
+        if (normalized.isEmpty() || result.size() >= limit) return result;
+
+        Set<Member> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.addAll(result);
+        if (PHONE_QUERY.matcher(normalized).matches()) {
+            // Hela numret eller slutsiffrorna; ett nummer är aldrig ett felstavat namn
+            for (Member member : registry.searchMembersByPhoneSuffix(normalized, limit)) {
+                if (result.size() < limit && seen.add(member)) result.add(member);
+            }
+            return result;
+        }
+
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+
+        // Per medlem: antal ord som matchade och summan av avstånden
+        Map<Member, int[]> scores = new LinkedHashMap<>();
+        synchronized (this) {
+            for (String word : normalized.split(" ")) {
+                if (word.length() < MIN_FUZZY_LENGTH) continue;
+                int maxDistance = word.length() <= 4 ? 1 : 2;
+                Map<Member, Integer> best = new IdentityHashMap<>();
+                boolean complete = names.search(word, maxDistance, deadline,
+                        (member, distance) -> best.merge(member, distance, Math::min));
+                best.forEach((member, distance) -> {
+                    int[] score = scores.computeIfAbsent(member, m -> new int[2]);
+                    score[0]++;
+                    score[1] += distance;
+                });
+                if (!complete) break;
+            }
+        }
+
+        scores.entrySet().stream()
+                .filter(e -> !seen.contains(e.getKey()))
+                .sorted(Comparator.<Map.Entry<Member, int[]>>comparingInt(e -> -e.getValue()[0])
+                        .thenComparingInt(e -> e.getValue()[1]))
+                .limit(limit - result.size())
+                .forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    private void index(Member member) {
+        unindex(member);
+        List<String> words = new ArrayList<>();
+        for (String name : new String[] { member.getFirstName(), member.getLastName() }) {
+            for (String word : normalize(name).split(" ")) {
+                if (!word.isEmpty() && !words.contains(word)) words.add(word);
+            }
+        }
+        for (String word : words) {
+            names.add(word, member);
+        }
+        indexedNames.put(member, words);
+    }
+
+    private void unindex(Member member) {
+        List<String> words = indexedNames.remove(member);
+        if (words == null) return;
+        for (String word : words) {
+            names.remove(word, member);
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) return "";
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,27 +2,124 @@ package se.scooterrental.service;
 
 import se.scooterrental.model.Member;
 import se.scooterrental.persistence.DataHandler;
+import se.scooterrental.persistence.UnitOfWork;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * Hanterar medlemsdatabasen (MemberRegistry).
  * Fixad: Innehåller getMembers() för att matcha MemberView.
+ * Ändringar och uppslag är synkroniserade eftersom flera kassor kan uppdatera medlemmar samtidigt.
+ * Medlemmarnas fält och indexen läses och skrivs bara under registrets monitor; händelser
+ * publiceras först när monitorn släppts, så prenumeranter aldrig körs under registrets lås.
  */
 public class MemberRegistry {
+
+    /**
+     * En sida med rankade sökträffar plus det totala antalet träffar.
+     */
+    public static final class SearchPage {
+        private final List<Member> members;
+        private final int totalMatches;
+
+        SearchPage(List<Member> members, int totalMatches) {
+            this.members = members;
+            this.totalMatches = totalMatches;
+        }
+
+        public List<Member> getMembers() { return members; }
+        public int getTotalMatches() { return totalMatches; }
+    }
+
     private List<Member> members;
+    // Skiftlägesokänsligt primärnyckelindex: normaliserat ID -> Member
+    private final Map<String, Member> membersById = new HashMap<>();
+    // Nyckeln varje medlem är indexerad under, så att ett ID-byte på objektet kan indexeras om
+    private final Map<Member, String> indexedKeys = new IdentityHashMap<>();
+    // Fritext- och statusindex för medlemsfliken
+    private final MemberSearchIndex searchIndex = new MemberSearchIndex();
+    // Normaliserade telefonnummer, för uppslag i kassan
+    private final PhoneIndex phoneIndex = new PhoneIndex();
+    private final DashboardStats stats;
+    private final DomainEventBus eventBus;
     private AtomicLong nextId;
+    // Räknas upp vid varje ändring; autosave jämför mot senast sparade version
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong savedVersion = new AtomicLong();
 
     public MemberRegistry() {
-        this.members = DataHandler.loadMembers();
-        if (this.members == null) {
-            this.members = new java.util.ArrayList<>();
-        }
+        this(new DashboardStats(), new DomainEventBus());
+    }
+
+    public MemberRegistry(DashboardStats stats, DomainEventBus eventBus) {
+        this(DataHandler.loadMembers(), stats, eventBus);
+    }
+
+    /**
+     * Skapar registret från en redan inläst lista (t.ex. från {@link StartupLoader}).
+     */
+    public MemberRegistry(List<Member> loaded, DashboardStats stats, DomainEventBus eventBus) {
+        this.stats = stats;
+        this.eventBus = eventBus;
+        // Copy-on-write: autosave läser en konsistent ögonblicksbild utan att blockera skrivningar
+        this.members = loaded != null ? new CopyOnWriteArrayList<>(loaded) : new CopyOnWriteArrayList<>();
+        buildIndex();
         initializeNextId();
+        stats.membersLoaded(members.size());
+    }
+
+    private void buildIndex() {
+        membersById.clear();
+        indexedKeys.clear();
+        searchIndex.clear();
+        phoneIndex.clear();
+        for (Member member : members) {
+            index(member);
+            searchIndex.index(member);
+            phoneIndex.index(member);
+        }
+    }
+
+    private static String key(String memberId) {
+        return memberId.toLowerCase(Locale.ROOT);
+    }
+
+    private void index(Member member) {
+        String key = key(member.getMemberId());
+        // Vid dubbletter vinner den första, precis som den tidigare linjära sökningen
+        if (membersById.putIfAbsent(key, member) == null) {
+            indexedKeys.put(member, key);
+        }
+    }
+
+    private void unindex(Member member) {
+        String key = indexedKeys.remove(member);
+        if (key != null) {
+            membersById.remove(key, member);
+        }
+    }
+
+    /**
+     * Indexerar om en medlem vars ID har ändrats direkt på objektet (t.ex. från MemberView).
+     */
+    private void reindexIfRenamed(Member member) {
+        String oldKey = indexedKeys.get(member);
+        if (oldKey != null && !oldKey.equals(key(member.getMemberId()))) {
+            unindex(member);
+            index(member);
+        }
     }
 
     private void initializeNextId() {
@@ -47,31 +144,89 @@ public class MemberRegistry {
         return Collections.unmodifiableList(members);
     }
 
+    public long getMemberCount() {
+        return stats.getMemberCount();
+    }
+
     public boolean addMember(Member member) {
-        if (members.stream().anyMatch(m -> m.getMemberId().equals(member.getMemberId()))) {
-            return false;
+        Member copy;
+        boolean onlyChange;
+        long v;
+        synchronized (this) {
+            if (membersById.containsKey(key(member.getMemberId()))) {
+                return false;
+            }
+            if (!members.add(member)) return false;
+            index(member);
+            searchIndex.index(member);
+            phoneIndex.index(member);
+            stats.memberAdded();
+            onlyChange = !hasUnsavedChanges();
+            v = version.incrementAndGet();
+            copy = member.copy();
         }
-        boolean added = members.add(member);
-        if (added) {
-            saveData();
+        // Är den nya medlemmen enda osparade ändringen räcker det att lägga den sist i filen
+        if (onlyChange) {
+            DataHandler.appendMemberAsync(copy, this::snapshot).thenAccept(ok -> {
+                if (ok) savedVersion.accumulateAndGet(v, Math::max);
+            });
+        } else {
+            saveDataAsync();
         }
-        return added;
+        eventBus.publish(DomainEvent.memberAdded(member));
+        return true;
     }
 
     public boolean updateMember(Member updatedMember) {
-        Optional<Member> existingMemberOpt = findMemberById(updatedMember.getMemberId());
-        if (existingMemberOpt.isPresent()) {
-            Member existingMember = existingMemberOpt.get();
+        return updateMember(updatedMember, null);
+    }
+
+    /**
+     * Uppdaterar en medlem som del av en unit of work; sparningen sker när enheten committas.
+     * @param work Enheten, eller null för att köa en egen sparning direkt.
+     */
+    public boolean updateMember(Member updatedMember, UnitOfWork work) {
+        Member existingMember;
+        synchronized (this) {
+            reindexIfRenamed(updatedMember);
+            existingMember = membersById.get(key(updatedMember.getMemberId()));
+            if (existingMember == null) return false;
             // Uppdaterar fälten
             existingMember.setFirstName(updatedMember.getFirstName());
             existingMember.setLastName(updatedMember.getLastName());
             existingMember.setEmail(updatedMember.getEmail());
             existingMember.setPhone(updatedMember.getPhone());
             existingMember.setStatus(updatedMember.getStatus());
-            saveData();
-            return true;
+            searchIndex.index(existingMember);
+            phoneIndex.index(existingMember);
+            version.incrementAndGet();
         }
-        return false;
+        if (work != null) enlist(work);
+        else saveDataAsync();
+        eventBus.publish(DomainEvent.memberUpdated(existingMember));
+        return true;
+    }
+
+    /**
+     * Ändrar en medlem. Ändringen görs först på en kopia, så att ett valideringsfel inte lämnar
+     * medlemmen halvändrad, och förs sedan över under registrets monitor.
+     * @param edit Sätter de nya värdena; får kasta IllegalArgumentException.
+     * @return true om medlemmen fanns i registret.
+     */
+    public boolean editMember(Member member, Consumer<Member> edit) {
+        Member draft = member.copy();
+        edit.accept(draft);
+        synchronized (this) {
+            if (!indexedKeys.containsKey(member)) return false;
+            member.copyDetailsFrom(draft);
+            reindexIfRenamed(member);
+            searchIndex.index(member);
+            phoneIndex.index(member);
+            version.incrementAndGet();
+        }
+        saveDataAsync();
+        eventBus.publish(DomainEvent.memberUpdated(member));
+        return true;
     }
 
     /**
@@ -80,28 +235,112 @@ public class MemberRegistry {
      * @return true om medlemmen togs bort, annars false.
      */
     public boolean removeMember(Member member) {
-        boolean removed = members.remove(member);
-        if (removed) {
-            saveData();
+        synchronized (this) {
+            if (!members.remove(member)) return false;
+            unindex(member);
+            searchIndex.remove(member);
+            phoneIndex.remove(member);
+            stats.memberRemoved();
+            version.incrementAndGet();
         }
-        return removed;
+        saveDataAsync();
+        eventBus.publish(DomainEvent.memberRemoved(member));
+        return true;
+    }
+
+    public synchronized Optional<Member> findMemberById(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(membersById.get(key(id)));
     }
 
-    public Optional<Member> findMemberById(String id) {
-        return members.stream()
-                .filter(m -> m.getMemberId().equalsIgnoreCase(id))
-                .findFirst();
+    /**
+     * Slår upp medlemmar på telefonnummer. Formatet spelar ingen roll:
+     * "+46 70-123 45 67" och "0701234567" är samma nummer.
+     * @return Medlemmarna med exakt det numret.
+     */
+    public synchronized List<Member> findMembersByPhone(String phone) {
+        return phoneIndex.find(phone);
     }
 
-    public List<Member> searchMembersByName(String nameQuery) {
-        String q = nameQuery.toLowerCase();
-        return members.stream()
-                .filter(m -> m.getFirstName().toLowerCase().contains(q) ||
-                        m.getLastName().toLowerCase().contains(q))
+    /**
+     * Söker medlemmar vars telefonnummer slutar på de angivna siffrorna (t.ex. de fyra sista).
+     * @param limit Max antal medlemmar.
+     */
+    public synchronized List<Member> searchMembersByPhoneSuffix(String digits, int limit) {
+        return phoneIndex.findBySuffix(digits, limit);
+    }
+
+    public synchronized List<Member> searchMembersByName(String nameQuery) {
+        String q = nameQuery.toLowerCase(Locale.ROOT);
+        // Indexet täcker även ID; träffar som bara matchar på ID sorteras bort
+        return searchIndex.search(q, null, Integer.MAX_VALUE).getMembers().stream()
+                .filter(m -> m.getFirstName().toLowerCase(Locale.ROOT).contains(q) ||
+                        m.getLastName().toLowerCase(Locale.ROOT).contains(q))
                 .collect(Collectors.toList());
     }
 
-    public boolean saveData() {
-        return DataHandler.saveMembers(members);
+    /**
+     * Söker på ID och namn (delsträng, skiftlägesokänsligt) med valfritt statusfilter.
+     * Träffarna rankas: exakt ID, exakt namn, ID-prefix, namnprefix, övriga delsträngar.
+     * @param query Söksträngen (tom = alla).
+     * @param status Statusfilter, eller null för alla.
+     * @param limit Max antal medlemmar på sidan.
+     * @return De bästa träffarna plus totalt antal träffar.
+     */
+    public synchronized SearchPage searchMembers(String query, Member.MemberStatus status, int limit) {
+        return searchIndex.search(query.toLowerCase(Locale.ROOT), status, limit);
+    }
+
+    /**
+     * Avgör om en enskild medlem matchar sökningen, med samma regler som searchMembers.
+     * Används av vyer för att uppdatera en rad utan att söka om hela registret.
+     * @param lowerQuery Söksträngen i gemener.
+     */
+    public synchronized boolean matchesSearch(Member member, String lowerQuery, Member.MemberStatus status) {
+        return MemberSearchIndex.matches(member, lowerQuery, status);
+    }
+
+    /**
+     * Ögonblicksbild för sparning: en kopia av varje medlem, tagen under registrets monitor
+     * så att ingen post kan vara halvt uppdaterad när den skrivs.
+     */
+    public synchronized List<Member> snapshot() {
+        List<Member> copies = new ArrayList<>(members.size());
+        for (Member member : members) {
+            copies.add(member.copy());
+        }
+        return copies;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return true om något ändrats sedan senaste lyckade sparning.
+     */
+    public boolean hasUnsavedChanges() {
+        return version.get() != savedVersion.get();
+    }
+
+    /**
+     * Tar med medlemslistan i en unit of work. Versionen markeras sparad när enheten committats.
+     */
+    public void enlist(UnitOfWork work) {
+        long v = version.get();
+        work.members(this::snapshot).onCommitted(() -> savedVersion.accumulateAndGet(v, Math::max));
+    }
+
+    /**
+     * Köar en sparning i bakgrunden; skurar av ändringar ger en enda skrivning.
+     * @return Future som blir true när data nått disken.
+     */
+    public CompletableFuture<Boolean> saveDataAsync() {
+        // Versionen läses före bilden (som tas först vid skrivningen), så bilden är minst så ny
+        long v = version.get();
+        return DataHandler.saveMembersAsync(this::snapshot).thenApply(ok -> {
+            if (ok) savedVersion.accumulateAndGet(v, Math::max);
+            return ok;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Member;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sökindex för medlemsregistret.
+ * Medlems-ID och fullständigt namn indexeras som n-gram (delsträngssökning), och status
+ * hålls som en BitSet per värde så att statusfiltret blir ett snitt. Träffarna rankas
+ * (exakt ID, exakt namn, prefix, delsträng) och bara den översta sidan sorteras fram.
+ * Varje medlem får en position när den indexeras; positioner återanvänds inte, så lika
+ * rankade träffar kommer i registrets ordning.
+ */
+final class MemberSearchIndex {
+
+    private static final int RANK_EXACT_ID = 0;
+    private static final int RANK_EXACT_NAME = 1;
+    private static final int RANK_ID_PREFIX = 2;
+    private static final int RANK_NAME_PREFIX = 3;
+    private static final int RANK_SUBSTRING = 4;
+    private static final int RANK_COUNT = 5;
+
+    private NgramIndex ngrams = new NgramIndex();
+    private final Map<Member, Integer> positions = new IdentityHashMap<>();
+    private final List<Member> byPosition = new ArrayList<>();
+    // ID, förnamn, efternamn och fullständigt namn i gemener per position, för rankningen
+    private final List<String[]> rankKeys = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<Member.MemberStatus, BitSet> byStatus = new EnumMap<>(Member.MemberStatus.class);
+
+    synchronized void clear() {
+        positions.clear();
+        byPosition.clear();
+        rankKeys.clear();
+        live.clear();
+        byStatus.clear();
+        ngrams = new NgramIndex();
+    }
+
+    /**
+     * Indexerar en ny medlem eller indexerar om en befintlig efter en ändring.
+     */
+    synchronized void index(Member member) {
+        Integer position = positions.get(member);
+        if (position == null) {
+            position = byPosition.size();
+            byPosition.add(member);
+            rankKeys.add(null);
+            positions.put(member, position);
+            live.set(position);
+        }
+        String[] keys = rankKeys(member);
+        rankKeys.set(position, keys);
+        ngrams.index(position, new String[] { keys[0], keys[3] });
+        for (BitSet bits : byStatus.values()) {
+            bits.clear(position);
+        }
+        if (member.getStatus() != null) {
+            byStatus.computeIfAbsent(member.getStatus(), s -> new BitSet()).set(position);
+        }
+    }
+
+    synchronized void remove(Member member) {
+        Integer position = positions.remove(member);
+        if (position == null) return;
+        byPosition.set(position, null);
+        rankKeys.set(position, null);
+        live.clear(position);
+        ngrams.remove(position);
+        for (BitSet bits : byStatus.values()) {
+            bits.clear(position);
+        }
+    }
+
+    /**
+     * @param lowerQuery Söksträngen i gemener (tom = alla).
+     * @param status Statusfilter, eller null för alla.
+     * @param limit Max antal medlemmar på sidan.
+     */
+    synchronized MemberRegistry.SearchPage search(String lowerQuery, Member.MemberStatus status, int limit) {
+        BitSet hits = lowerQuery.isEmpty() ? (BitSet) live.clone() : ngrams.search(lowerQuery);
+        if (status != null) {
+            BitSet statusBits = byStatus.get(status);
+            if (statusBits == null) return new MemberRegistry.SearchPage(List.of(), 0);
+            hits.and(statusBits);
+        }
+        int total = hits.cardinality();
+
+        List<Member> page = new ArrayList<>(Math.min(limit, total));
+        if (lowerQuery.isEmpty()) {
+            // Alla träffar är lika bra; ta de första i registrets ordning
+            for (int position = hits.nextSetBit(0); position >= 0 && page.size() < limit;
+                 position = hits.nextSetBit(position + 1)) {
+                page.add(byPosition.get(position));
+            }
+            return new MemberRegistry.SearchPage(page, total);
+        }
+
+        // En hink per rank; träffarna kommer i positionsordning, så varje hink behöver bara
+        // de första 'limit'. Sidan fylls sedan hink för hink, bästa rank först.
+        List<List<Member>> buckets = new ArrayList<>(RANK_COUNT);
+        for (int rank = 0; rank < RANK_COUNT; rank++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int position = hits.nextSetBit(0); position >= 0; position = hits.nextSetBit(position + 1)) {
+            List<Member> bucket = buckets.get(rank(rankKeys.get(position), lowerQuery));
+            if (bucket.size() < limit) bucket.add(byPosition.get(position));
+        }
+        for (List<Member> bucket : buckets) {
+            for (Member member : bucket) {
+                if (page.size() >= limit) break;
+                page.add(member);
+            }
+        }
+        return new MemberRegistry.SearchPage(page, total);
+    }
+
+    /**
+     * @return true om medlemmen matchar sökningen, med samma regler som indexet.
+     */
+    static boolean matches(Member member, String lowerQuery, Member.MemberStatus status) {
+        if (status != null && member.getStatus() != status) return false;
+        return lowerQuery.isEmpty() || NgramIndex.containsIn(searchableTexts(member), lowerQuery);
+    }
+
+    private static String[] searchableTexts(Member member) {
+        String[] keys = rankKeys(member);
+        return new String[] { keys[0], keys[3] };
+    }
+
+    private static String[] rankKeys(Member member) {
+        String first = NgramIndex.lower(member.getFirstName());
+        String last = NgramIndex.lower(member.getLastName());
+        return new String[] { NgramIndex.lower(member.getMemberId()), first, last, first + " " + last };
+    }
+
+    private static int rank(String[] keys, String lowerQuery) {
+        if (keys[0].equals(lowerQuery)) return RANK_EXACT_ID;
+        if (keys[1].equals(lowerQuery) || keys[2].equals(lowerQuery) || keys[3].equals(lowerQuery)) {
+            return RANK_EXACT_NAME;
+        }
+        if (keys[0].startsWith(lowerQuery)) return RANK_ID_PREFIX;
+        if (keys[1].startsWith(lowerQuery) || keys[2].startsWith(lowerQuery)) return RANK_NAME_PREFIX;
+        return RANK_SUBSTRING;
+    }
+}
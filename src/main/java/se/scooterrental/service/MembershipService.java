@@ -41,7 +41,7 @@ public class MembershipService {
             Member newMember = new Member(newId, firstName, lastName, phone, email, status);
 
             if (registry.addMember(newMember)) {
-                registry.saveData(); // Spara direkt vid registrering
+                // addMember köar redan sparningen; en andra sparning här skrev filen två gånger
                 return Optional.of(newMember);
             }
         } catch (IllegalArgumentException e) {
@@ -70,13 +70,15 @@ public class MembershipService {
                 lastName = member.getLastName(); // Behåll gammalt om nytt format är konstigt, eller sätt "-"
             }
 
-            member.setFirstName(firstName);
-            member.setLastName(lastName);
-            member.setPhone(phone);
-            member.setStatus(status);
-
-            registry.saveData(); // Spara ändringar
-            return true;
+            String newFirstName = firstName;
+            String newLastName = lastName;
+            // Sparar ändringar och publicerar MEMBER_UPDATED
+            return registry.editMember(member, m -> {
+                m.setFirstName(newFirstName);
+                m.setLastName(newLastName);
+                m.setPhone(phone);
+                m.setStatus(status);
+            });
         }
 
         return false;
@@ -91,13 +93,17 @@ public class MembershipService {
     }
 
     /**
-     * Söker medlemmar baserat på namn eller ID.
+     * Söker medlemmar baserat på namn, ID eller telefonnummer.
      */
     public List<Member> searchMembers(String query) {
         Optional<Member> memberById = registry.findMemberById(query);
         if (memberById.isPresent()) {
             return List.of(memberById.get());
         }
+        List<Member> byPhone = registry.findMembersByPhone(query);
+        if (!byPhone.isEmpty()) {
+            return byPhone;
+        }
         return registry.searchMembersByName(query);
     }
 }
\ No newline at end of file
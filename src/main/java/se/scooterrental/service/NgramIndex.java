@@ -0,0 +1,193 @@
+package se.scooterrental.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Inverterat n-gramindex för delsträngssökning.
+ * Varje sökbar text delas upp i alla delsträngar om 1-3 tecken. En sökning slår upp söksträngens
+ * n-gram och tar snittet av träfflistorna; söksträngar på högst tre tecken besvaras direkt,
+ * längre kontrolleras mot texten. Posterna identifieras med en position (t.ex. i en lista),
+ * så träffarna kommer i positionsordning. Träfflistorna är sorterade int-arrayer som snittas
+ * genom sammanfogning, så minnet växer med antal träffar och inte med antal poster.
+ */
+final class NgramIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    // n-gram -> positioner för poster som innehåller det
+    private final Map<String, Postings> postings = new HashMap<>();
+    // De texter varje position senast indexerades med, för att kunna ta bort dem vid ändring
+    private final List<String[]> indexedTexts = new ArrayList<>();
+
+    /**
+     * Indexerar (eller indexerar om) texterna för en position.
+     * Gör ingenting om texterna inte ändrats, t.ex. när bara en tillgänglighet ändrats.
+     * @param texts Sökbara texter i gemener.
+     */
+    synchronized void index(int position, String[] texts) {
+        while (indexedTexts.size() <= position) {
+            indexedTexts.add(null);
+        }
+        String[] old = indexedTexts.get(position);
+        if (old != null && Arrays.equals(old, texts)) return;
+
+        unindex(position, old);
+        for (String text : texts) {
+            forEachGram(text, gram -> postings.computeIfAbsent(gram, g -> new Postings()).add(position));
+        }
+        indexedTexts.set(position, texts);
+    }
+
+    /**
+     * Tar bort positionen ur indexet.
+     */
+    synchronized void remove(int position) {
+        if (position >= indexedTexts.size()) return;
+        unindex(position, indexedTexts.get(position));
+        indexedTexts.set(position, null);
+    }
+
+    /**
+     * @return Texterna positionen senast indexerades med, eller null.
+     */
+    synchronized String[] textsAt(int position) {
+        return position < indexedTexts.size() ? indexedTexts.get(position) : null;
+    }
+
+    /**
+     * Hittar alla positioner vars sökbara fält innehåller söksträngen.
+     * @param lowerQuery Söksträngen i gemener, inte tom.
+     * @return Ny BitSet med träffarna; anroparen får ändra i den.
+     */
+    synchronized BitSet search(String lowerQuery) {
+        int gramLength = Math.min(MAX_GRAM, lowerQuery.length());
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + gramLength <= lowerQuery.length(); i++) {
+            Postings list = postings.get(lowerQuery.substring(i, i + gramLength));
+            if (list == null) return new BitSet();
+            lists.add(list);
+        }
+        // Kortaste listan först, så att snittet krymper så tidigt som möjligt
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+        int[] candidates = Arrays.copyOf(shortest.positions, shortest.size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(candidates, count, lists.get(i));
+        }
+
+        BitSet result = new BitSet();
+        for (int i = 0; i < count; i++) {
+            int position = candidates[i];
+            // Alla trigram finns, men inte nödvändigtvis i följd; långa söksträngar kontrolleras mot texten
+            if (lowerQuery.length() > MAX_GRAM) {
+                String[] texts = indexedTexts.get(position);
+                if (texts == null || !containsIn(texts, lowerQuery)) continue;
+            }
+            result.set(position);
+        }
+        return result;
+    }
+
+    /**
+     * Snittet av candidates[0..count) och listan, skrivet på plats i candidates. Båda är sorterade.
+     * @return Antal kvarvarande kandidater.
+     */
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int kept = 0;
+        int i = 0;
+        int j = 0;
+        while (i < count && j < list.size) {
+            int a = candidates[i];
+            int b = list.positions[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                candidates[kept++] = a;
+                i++;
+                j++;
+            }
+        }
+        return kept;
+    }
+
+    static boolean containsIn(String[] texts, String lowerQuery) {
+        for (String text : texts) {
+            if (text.contains(lowerQuery)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Texten i gemener, eller tom sträng för null.
+     */
+    static String lower(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private void unindex(int position, String[] texts) {
+        if (texts == null) return;
+        for (String text : texts) {
+            forEachGram(text, gram -> {
+                Postings list = postings.get(gram);
+                if (list != null) {
+                    list.remove(position);
+                    if (list.size == 0) postings.remove(gram);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sorterad lista med positioner för ett n-gram, utan dubbletter.
+     * Positioner läggs oftast till i stigande ordning, så tillägg sist är snabbvägen.
+     */
+    private static final class Postings {
+        private int[] positions = new int[2];
+        private int size;
+
+        void add(int position) {
+            int at = size;
+            if (size > 0 && positions[size - 1] >= position) {
+                int found = Arrays.binarySearch(positions, 0, size, position);
+                if (found >= 0) return;
+                at = -found - 1;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(positions, at, positions, at + 1, size - at);
+            positions[at] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (at < 0) return;
+            System.arraycopy(positions, at + 1, positions, at, size - at - 1);
+            size--;
+            // Krymper när listan är en fjärdedel full, så att borttagna poster inte håller kvar minne
+            if (positions.length > 8 && size < positions.length / 4) {
+                positions = Arrays.copyOf(positions, positions.length / 2);
+            }
+        }
+    }
+
+    private static void forEachGram(String text, Consumer<String> action) {
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= text.length(); i++) {
+                action.accept(text.substring(i, i + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Member;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Telefonnummerindex för medlemsregistret.
+ * Numren normaliseras till nationellt format med bara siffror (mellanslag och bindestreck
+ * tas bort, +46 och 0046 blir 0), så att "+46 70-123 45 67" och "0701234567" är samma nummer.
+ * Exakt uppslag går via en hashtabell; slutsiffror söks i en sorterad tabell över de
+ * baklängesvända numren, där en suffixsökning blir ett prefixintervall.
+ */
+final class PhoneIndex {
+
+    private final Map<String, List<Member>> byNumber = new HashMap<>();
+    private final TreeMap<String, List<Member>> byReversedNumber = new TreeMap<>();
+    // Numret varje medlem senast indexerades med; fälten ändras direkt på objektet före updateMember
+    private final Map<Member, String> indexedNumbers = new IdentityHashMap<>();
+
+    void clear() {
+        byNumber.clear();
+        byReversedNumber.clear();
+        indexedNumbers.clear();
+    }
+
+    /**
+     * Indexerar en ny medlem eller indexerar om en befintlig efter en ändring.
+     */
+    void index(Member member) {
+        String number = normalize(member.getPhone());
+        String previous = indexedNumbers.get(member);
+        if (number.equals(previous)) return;
+        remove(member);
+        if (number.isEmpty()) return;
+        byNumber.computeIfAbsent(number, n -> new ArrayList<>(1)).add(member);
+        byReversedNumber.computeIfAbsent(reverse(number), n -> new ArrayList<>(1)).add(member);
+        indexedNumbers.put(member, number);
+    }
+
+    void remove(Member member) {
+        String number = indexedNumbers.remove(member);
+        if (number == null) return;
+        removeFrom(byNumber, number, member);
+        removeFrom(byReversedNumber, reverse(number), member);
+    }
+
+    /**
+     * @return Medlemmarna med exakt detta nummer (oftast en, men familjer kan dela nummer).
+     */
+    List<Member> find(String phone) {
+        List<Member> members = byNumber.get(normalize(phone));
+        return members == null ? List.of() : List.copyOf(members);
+    }
+
+    /**
+     * @return Medlemmar vars nummer slutar på de angivna siffrorna, högst limit stycken.
+     */
+    List<Member> findBySuffix(String digits, int limit) {
+        String suffix = normalize(digits);
+        List<Member> result = new ArrayList<>();
+        if (suffix.isEmpty()) return result;
+        String reversed = reverse(suffix);
+        // Alla nycklar som börjar på den vända suffixen ligger i [reversed, reversed + Character.MAX_VALUE)
+        for (List<Member> members : byReversedNumber.subMap(reversed, true, reversed + Character.MAX_VALUE, false).values()) {
+            for (Member member : members) {
+                if (result.size() >= limit) return result;
+                result.add(member);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normaliserar ett telefonnummer till bara siffror i nationellt format.
+     * @return Numret, eller tom sträng om det inte innehåller några siffror.
+     */
+    static String normalize(String phone) {
+        if (phone == null) return "";
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+        }
+        boolean countryCode = phone.trim().startsWith("+46") || digits.indexOf("0046") == 0;
+        if (countryCode) {
+            digits.replace(0, digits.charAt(0) == '0' ? 4 : 2, "0");
+            // "+46 070..." (landskod plus inledande nolla) ger annars en dubbel nolla
+            if (digits.length() > 1 && digits.charAt(1) == '0') digits.deleteCharAt(0);
+        }
+        return digits.toString();
+    }
+
+    private static String reverse(String number) {
+        return new StringBuilder(number).reverse().toString();
+    }
+
+    private static void removeFrom(Map<String, List<Member>> map, String key, Member member) {
+        List<Member> members = map.get(key);
+        if (members == null) return;
+        members.removeIf(m -> m == member);
+        if (members.isEmpty()) map.remove(key);
+    }
+}
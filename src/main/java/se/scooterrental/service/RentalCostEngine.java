@@ -0,0 +1,150 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Rental;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gemensam taxameter för alla aktiva uthyrningar.
+ * En gång per sekund beräknas aktuell kostnad för samtliga aktiva uthyrningar i ett svep,
+ * på en egen bakgrundstråd, och resultatet publiceras som en oföränderlig ögonblicksbild.
+ * Alla vyer läser från samma bild, så två öppna vyer dubblerar inte arbetet.
+ * Finns inga aktiva uthyrningar hoppas svepet över, så motorn är i praktiken vilande.
+ */
+public class RentalCostEngine {
+
+    /**
+     * Oföränderligt resultat från ett svep.
+     */
+    public static final class Snapshot {
+        private final long computedAtEpochSecond;
+        private final Map<String, Double> costsByRentalId;
+
+        private Snapshot(long computedAtEpochSecond, Map<String, Double> costsByRentalId) {
+            this.computedAtEpochSecond = computedAtEpochSecond;
+            this.costsByRentalId = costsByRentalId;
+        }
+
+        public long getComputedAtEpochSecond() { return computedAtEpochSecond; }
+
+        public boolean isEmpty() { return costsByRentalId.isEmpty(); }
+
+        /**
+         * @return Kostnaden, eller null om uthyrningen inte fanns med i svepet.
+         */
+        public Double getCost(String rentalId) {
+            return costsByRentalId.get(rentalId);
+        }
+    }
+
+    private static final long TICK_MS = 1000;
+
+    private final RentalService rentalService;
+    private final Inventory inventory;
+    private final DomainEventBus eventBus;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot = new Snapshot(0L, Collections.emptyMap());
+
+    public RentalCostEngine(RentalService rentalService, Inventory inventory, DomainEventBus eventBus) {
+        this.rentalService = rentalService;
+        this.inventory = inventory;
+        this.eventBus = eventBus;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Rental-Cost-Engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Prenumererar på uthyrningshändelserna och startar svepen. Görs här och inte i konstruktorn,
+     * så att motorn inte kan anropas innan den är färdigbyggd.
+     */
+    public void start() {
+        // Räkna om direkt när en uthyrning startar eller avslutas, istället för att vänta på nästa tick
+        eventBus.subscribe(event -> {
+            if (event.isRentalEvent()) recomputeNow();
+        });
+        scheduler.scheduleAtFixedRate(this::recompute, 0, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void recomputeNow() {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::recompute);
+        }
+    }
+
+    /**
+     * Registrerar en lyssnare som anropas (på motorns tråd) efter varje nytt svep.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Kostnad för en uthyrning enligt senaste svepet. Saknas den (t.ex. nystartad före nästa svep)
+     * räknas den ut direkt för just den uthyrningen.
+     * @return Kostnaden, eller null om artikeln inte finns.
+     */
+    public Double getCost(Rental rental) {
+        return getCost(rental, snapshot);
+    }
+
+    /**
+     * Som {@link #getCost(Rental)}, men läser ur en given ögonblicksbild, t.ex. den vyn senast fick.
+     */
+    public Double getCost(Rental rental, Snapshot snapshot) {
+        Double cost = rental.getId() != null ? snapshot.getCost(rental.getId()) : null;
+        if (cost != null) return cost;
+
+        Optional<Item> item = inventory.findItemById(rental.getItemId());
+        return item.map(i -> rental.getCurrentCost(i.getCurrentRentalPrice())).orElse(null);
+    }
+
+    private void recompute() {
+        try {
+            long now = System.currentTimeMillis() / 1000L;
+            List<Rental> active = rentalService.getActiveRentalsSnapshot();
+            if (active.isEmpty() && snapshot.isEmpty()) {
+                return; // Inget har ändrats sedan förra svepet
+            }
+
+            Map<String, Double> costs = new HashMap<>(active.size() * 2);
+            for (Rental rental : active) {
+                Optional<Item> item = inventory.findItemById(rental.getItemId());
+                if (item.isPresent()) {
+                    costs.put(rental.getId(), rental.getCostAt(item.get().getCurrentRentalPrice(), now));
+                }
+            }
+
+            snapshot = new Snapshot(now, Collections.unmodifiableMap(costs));
+            listeners.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            // Ett undantag får inte stoppa den schemalagda uppgiften
+            System.err.println("FEL: Kostnadsberäkningen misslyckades. " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.PricePolicy;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.StandardPricePolicy;
+import se.scooterrental.model.StudentPricePolicy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+
+/**
+ * Kolumnlagrad historik över avslutade uthyrningar.
+ * Varje fält ligger i en egen kolumn (en rad per uthyrning), och medlems-/item-ID:n
+ * lagras som index i en gemensam ordlista. Rental-objekt skapas först när de efterfrågas;
+ * analys över hela historiken läser kolumnerna i följd istället för att följa referenser,
+ * och persistensen strömmar raderna via {@link #cursor(int)} en bit i taget.
+ * Raderna ändras aldrig när de väl lagts till.
+ *
+ * Kolumnerna ligger utanför heapen i direktbuffertar, uppdelade i segment av fast storlek,
+ * så att heapen (och GC-pauserna) inte växer med historiken. Bara ordlistan och de senast
+ * arkiverade uthyrningarna hålls som heap-objekt.
+ */
+final class RentalHistoryStore {
+
+    // Rader per segment; ett segment är ca 170 kB direktminne
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_ROWS - 1;
+    // Så många av de senast arkiverade uthyrningarna behålls som objekt
+    private static final int RECENT_ON_HEAP = 256;
+    // Rader per bit när historiken strömmas via en markör
+    private static final int CURSOR_CHUNK = 1024;
+    // Rader vars ID inte är ett vanligt tal; ID:t ligger då i irregularIds
+    private static final long IRREGULAR_ID = Long.MIN_VALUE;
+    private static final int NO_INDEX = -1;
+
+    private static final byte POLICY_NONE = 0;
+    private static final byte POLICY_STANDARD = 1;
+    private static final byte POLICY_STUDENT = 2;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * En fast mängd rader, en direktbuffert per kolumn. Fylls på men flyttas aldrig.
+     */
+    private static final class Segment {
+        final LongBuffer ids = ByteBuffer.allocateDirect(SEGMENT_ROWS * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        final LongBuffer starts = ByteBuffer.allocateDirect(SEGMENT_ROWS * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        final LongBuffer ends = ByteBuffer.allocateDirect(SEGMENT_ROWS * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        final IntBuffer members = ByteBuffer.allocateDirect(SEGMENT_ROWS * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        final IntBuffer items = ByteBuffer.allocateDirect(SEGMENT_ROWS * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        final ByteBuffer policies = ByteBuffer.allocateDirect(SEGMENT_ROWS);
+        final DoubleBuffer costs = ByteBuffer.allocateDirect(SEGMENT_ROWS * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private int size;
+    // Ringbuffert med de senast arkiverade objekten; rad r ligger på plats r % RECENT_ON_HEAP
+    private final Rental[] recent = new Rental[RECENT_ON_HEAP];
+
+    private final Map<Integer, String> irregularIds = new HashMap<>();
+    // Rader med tidsträngar som inte gick att tolka: {start, slut}
+    private final Map<Integer, String[]> unparsedTimes = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+    synchronized void clear() {
+        // Direktminnet släpps när segmenten samlas in
+        segments.clear();
+        Arrays.fill(recent, null);
+        size = 0;
+        irregularIds.clear();
+        unparsedTimes.clear();
+        dictionary.clear();
+        dictionaryIndex.clear();
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Lägger till en avslutad uthyrning som en ny rad.
+     */
+    synchronized void add(Rental rental) {
+        int row = size;
+        if ((row & SEGMENT_MASK) == 0) {
+            segments.add(new Segment());
+        }
+        Segment segment = segments.get(row >>> SEGMENT_SHIFT);
+        int offset = row & SEGMENT_MASK;
+
+        String id = rental.getId();
+        long numericId = numericId(id);
+        segment.ids.put(offset, numericId);
+        if (numericId == IRREGULAR_ID) irregularIds.put(row, id);
+        segment.starts.put(offset, rental.getStartEpochSecond());
+        segment.ends.put(offset, rental.getEndEpochSecond());
+        if (rental.getUnparsedStartTime() != null || rental.getUnparsedEndTime() != null) {
+            unparsedTimes.put(row, new String[] { rental.getUnparsedStartTime(), rental.getUnparsedEndTime() });
+        }
+        segment.members.put(offset, intern(rental.getMemberId()));
+        segment.items.put(offset, intern(rental.getItemId()));
+        segment.policies.put(offset, policyCode(rental.getPricePolicy()));
+        segment.costs.put(offset, rental.getTotalCost());
+        recent[row % RECENT_ON_HEAP] = rental;
+        size++;
+    }
+
+    /**
+     * Läser raderna {@code [0, rows)} i följd. Objekten skapas en bit i taget när markören
+     * flyttas fram, så minnet begränsas till en bit oavsett historikens storlek, och låset
+     * hålls bara medan en bit läses. Används av persistensen för att strömma historiken.
+     */
+    Iterator<Rental> cursor(int rows) {
+        return new Iterator<>() {
+            private final List<Rental> chunk = new ArrayList<>(CURSOR_CHUNK);
+            private int chunkPosition;
+            private int nextRow;
+
+            @Override
+            public boolean hasNext() {
+                if (chunkPosition < chunk.size()) return true;
+                if (nextRow >= rows) return false;
+                // Nästa bit läses redan här, så att hasNext stämmer även om historiken tömts
+                chunk.clear();
+                chunkPosition = 0;
+                int read = fill(chunk, nextRow, Math.min(rows, nextRow + CURSOR_CHUNK));
+                nextRow = read == 0 ? rows : nextRow + read;
+                return read > 0;
+            }
+
+            @Override
+            public Rental next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return chunk.get(chunkPosition++);
+            }
+        };
+    }
+
+    private synchronized int fill(List<Rental> target, int from, int to) {
+        int end = Math.min(to, size);
+        for (int row = from; row < end; row++) {
+            target.add(materialize(row));
+        }
+        return Math.max(0, end - from);
+    }
+
+    /**
+     * @return Alla avslutade uthyrningar för medlemmen, i historikordning.
+     */
+    synchronized List<Rental> forMember(String memberId) {
+        List<Rental> result = new ArrayList<>();
+        Integer index = dictionaryIndex.get(memberId);
+        if (index == null) return result;
+        int member = index;
+        for (int row = 0; row < size; row++) {
+            if (segment(row).members.get(row & SEGMENT_MASK) == member) result.add(materialize(row));
+        }
+        return result;
+    }
+
+    /**
+     * Intäkt per startdatum för uthyrningar som startade {@code from} eller senare.
+     * @return Karta datum -> summa, endast dagar med uthyrningar.
+     */
+    synchronized Map<LocalDate, Double> revenueByDay(LocalDate from) {
+        long fromEpoch = from.atStartOfDay(ZONE).toEpochSecond();
+        Map<LocalDate, Double> result = new HashMap<>();
+        // Datumet räknas bara om när raden ligger utanför föregående dygn
+        long dayStart = Long.MAX_VALUE, dayEnd = Long.MIN_VALUE;
+        LocalDate day = null;
+        for (int row = 0; row < size; row++) {
+            Segment segment = segment(row);
+            int offset = row & SEGMENT_MASK;
+            long start = segment.starts.get(offset);
+            if (start == Rental.NO_TIME || start < fromEpoch) continue;
+            if (start < dayStart || start >= dayEnd) {
+                day = LocalDate.ofInstant(Instant.ofEpochSecond(start), ZONE);
+                dayStart = day.atStartOfDay(ZONE).toEpochSecond();
+                dayEnd = day.plusDays(1).atStartOfDay(ZONE).toEpochSecond();
+            }
+            result.merge(day, segment.costs.get(offset), Double::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Intäkt per item-ID för uthyrningar som startade {@code from} eller senare.
+     */
+    synchronized Map<String, Double> revenueByItem(LocalDate from) {
+        long fromEpoch = from.atStartOfDay(ZONE).toEpochSecond();
+        double[] perItem = new double[dictionary.size()];
+        boolean[] seen = new boolean[dictionary.size()];
+        double withoutItem = 0.0;
+        boolean anyWithoutItem = false;
+        for (int row = 0; row < size; row++) {
+            Segment segment = segment(row);
+            int offset = row & SEGMENT_MASK;
+            long start = segment.starts.get(offset);
+            if (start == Rental.NO_TIME || start < fromEpoch) continue;
+            int item = segment.items.get(offset);
+            double cost = segment.costs.get(offset);
+            if (item == NO_INDEX) {
+                withoutItem += cost;
+                anyWithoutItem = true;
+            } else {
+                perItem[item] += cost;
+                seen[item] = true;
+            }
+        }
+        Map<String, Double> result = new HashMap<>();
+        for (int i = 0; i < perItem.length; i++) {
+            if (seen[i]) result.put(dictionary.get(i), perItem[i]);
+        }
+        if (anyWithoutItem) result.put(null, withoutItem);
+        return result;
+    }
+
+    /**
+     * Summerar intäkt per startdatum för alla rader med ID, som underlag till dagshinkarna.
+     * Äldre uthyrningar utan ID räknas inte, precis som i RentalService.
+     * @return Total intäkt för alla rader (med eller utan ID).
+     */
+    synchronized double fillRollup(RevenueRollup rollup) {
+        double total = 0.0;
+        for (int row = 0; row < size; row++) {
+            Segment segment = segment(row);
+            int offset = row & SEGMENT_MASK;
+            double cost = segment.costs.get(offset);
+            long start = segment.starts.get(offset);
+            total += cost;
+            boolean hasId = segment.ids.get(offset) != IRREGULAR_ID || irregularIds.get(row) != null;
+            if (hasId && start != Rental.NO_TIME) {
+                rollup.add(LocalDate.ofInstant(Instant.ofEpochSecond(start), ZONE), cost);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Största numeriska rental-ID i historiken, om något finns.
+     */
+    synchronized OptionalLong maxNumericId() {
+        long max = Long.MIN_VALUE;
+        boolean found = false;
+        for (int row = 0; row < size; row++) {
+            long id = segment(row).ids.get(row & SEGMENT_MASK);
+            if (id != IRREGULAR_ID) {
+                max = Math.max(max, id);
+                found = true;
+            }
+        }
+        // Oregelbundna ID:n som ändå är siffror (t.ex. med inledande nollor) räknas också
+        for (String id : irregularIds.values()) {
+            if (id != null && id.matches("\\d+")) {
+                max = Math.max(max, Long.parseLong(id));
+                found = true;
+            }
+        }
+        return found ? OptionalLong.of(max) : OptionalLong.empty();
+    }
+
+    private Segment segment(int row) {
+        return segments.get(row >>> SEGMENT_SHIFT);
+    }
+
+    private Rental materialize(int row) {
+        if (row >= size - RECENT_ON_HEAP) {
+            return recent[row % RECENT_ON_HEAP];
+        }
+        Segment segment = segment(row);
+        int offset = row & SEGMENT_MASK;
+        long numericId = segment.ids.get(offset);
+        String id = numericId == IRREGULAR_ID ? irregularIds.get(row) : Long.toString(numericId);
+        Rental rental = new Rental(id, lookup(segment.members.get(offset)), lookup(segment.items.get(offset)),
+                policyFor(segment.policies.get(offset)), segment.starts.get(offset), segment.ends.get(offset),
+                false, segment.costs.get(offset));
+        String[] times = unparsedTimes.get(row);
+        if (times != null) rental.keepUnparsedTimes(times[0], times[1]);
+        return rental;
+    }
+
+    private String lookup(int index) {
+        return index == NO_INDEX ? null : dictionary.get(index);
+    }
+
+    private int intern(String value) {
+        if (value == null) return NO_INDEX;
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Tolkar ID:t som ett tal om det skrivs exakt som talet (ingen inledande nolla, inget tecken),
+     * så att det kan återskapas oförändrat. Annars (och för null) returneras IRREGULAR_ID.
+     */
+    private static long numericId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 18) return IRREGULAR_ID;
+        if (id.length() > 1 && id.charAt(0) == '0') return IRREGULAR_ID;
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') return IRREGULAR_ID;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Samma två policyer som persistenslagret känner till
+    private static byte policyCode(PricePolicy policy) {
+        if (policy == null) return POLICY_NONE;
+        return policy instanceof StudentPricePolicy ? POLICY_STUDENT : POLICY_STANDARD;
+    }
+
+    private static PricePolicy policyFor(byte code) {
+        switch (code) {
+            case POLICY_NONE: return null;
+            case POLICY_STUDENT: return new StudentPricePolicy();
+            default: return new StandardPricePolicy();
+        }
+    }
+}
@@ -5,43 +5,159 @@ import se.scooterrental.model.Member;
 import se.scooterrental.model.Rental;
 import se.scooterrental.model.PricePolicy;
 import se.scooterrental.persistence.DataHandler;
+import se.scooterrental.persistence.UnitOfWork;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 public class RentalService {
     private MemberRegistry memberRegistry;
     private Inventory inventory;
+    // Uthyrningar som fortfarande är heap-objekt: de aktiva (även äldre utan ID)
     private List<Rental> rentals;
+    // Avslutade uthyrningar ligger kolumnvis utanför heapen; Rental-objekt skapas först när de efterfrågas
+    private final RentalHistoryStore history = new RentalHistoryStore();
+    // Levande mängd aktiva uthyrningar i startordning, uppdateras vid rent/end
+    private final Map<String, Rental> activeRentals = new LinkedHashMap<>();
+    // Oföränderlig kopia av de aktiva uthyrningarna som alla trådar kan läsa utan lås
+    private volatile List<Rental> activeSnapshot = List.of();
+
+    // Skyddar activeRentals och flytten från rentals till historiken. Hålls bara under själva ändringen.
+    private final Object stateLock = new Object();
+    // Lås per item (stripat), så att två kassor inte kan hyra ut samma item
+    // men uthyrningar av olika items kan gå parallellt
+    private static final int LOCK_STRIPES = 64;
+    private final Object[] itemLocks = new Object[LOCK_STRIPES];
+    private final DashboardStats stats;
+    private final DomainEventBus eventBus;
+    // Intäkt per dag, underhålls när uthyrningar avslutas
+    private final RevenueRollup revenueRollup = new RevenueRollup();
     private AtomicLong nextId;
-
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private static final DateTimeFormatter OLD_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    // Räknas upp vid varje ändring; autosave jämför mot senast sparade version
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong savedVersion = new AtomicLong();
 
     public RentalService(MemberRegistry memberRegistry, Inventory inventory) {
+        this(memberRegistry, inventory, new DashboardStats(), new DomainEventBus());
+    }
+
+    public RentalService(MemberRegistry memberRegistry, Inventory inventory, DashboardStats stats, DomainEventBus eventBus) {
+        this(memberRegistry, inventory, DataHandler.loadRentals(), stats, eventBus);
+    }
+
+    /**
+     * Skapar tjänsten från en redan inläst lista (t.ex. från {@link StartupLoader}).
+     */
+    public RentalService(MemberRegistry memberRegistry, Inventory inventory, List<Rental> loaded,
+                         DashboardStats stats, DomainEventBus eventBus) {
+        this.stats = stats;
+        this.eventBus = eventBus;
         this.memberRegistry = memberRegistry;
         this.inventory = inventory;
-        this.rentals = DataHandler.loadRentals();
-        if (this.rentals == null) {
-            this.rentals = new java.util.ArrayList<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            itemLocks[i] = new Object();
         }
+        // Copy-on-write: autosave läser en konsistent ögonblicksbild utan att blockera skrivningar
+        this.rentals = new CopyOnWriteArrayList<>();
+        buildIndex(loaded != null ? loaded : List.of());
+        reconcileWithJournal();
         initializeNextId();
+        checkpointIfDue();
+    }
+
+    private void buildIndex(List<Rental> loaded) {
+        activeRentals.clear();
+        revenueRollup.clear();
+        history.clear();
+        List<Rental> heap = new ArrayList<>();
+        for (Rental rental : loaded) {
+            if (!rental.isActive()) {
+                history.add(rental);
+                continue;
+            }
+            heap.add(rental);
+            if (rental.getId() != null) {
+                activeRentals.putIfAbsent(rental.getId(), rental);
+            }
+        }
+        rentals.addAll(heap);
+        // Intäkten och dagshinkarna räknas fram i en genomläsning av kolumnerna
+        stats.revenueLoaded(history.fillRollup(revenueRollup));
+        publishActiveSnapshot();
+    }
+
+    /**
+     * Härleder items tillgänglighet och medlemmarnas historik från de aktiva uthyrningarna efter
+     * journaluppspelningen. Journalen skrivs direkt men items.json och members.json först efter
+     * skrivfördröjningen, så efter en krasch kan filerna ligga efter journalen.
+     */
+    private void reconcileWithJournal() {
+        UnitOfWork work = null;
+        Set<String> rentedItemIds = new HashSet<>();
+        for (Rental rental : activeRentals.values()) {
+            rentedItemIds.add(rental.getItemId());
+            Optional<Member> memberOpt = memberRegistry.findMemberById(rental.getMemberId());
+            if (memberOpt.isEmpty()) continue;
+            Member member = memberOpt.get();
+            synchronized (member) {
+                if (member.getRentalHistory().contains(rental.getId())) continue;
+                member.addRentalToHistory(rental.getId());
+            }
+            if (work == null) work = DataHandler.beginUnitOfWork();
+            memberRegistry.updateMember(member, work);
+        }
+        for (Item item : inventory.getAllItems()) {
+            boolean available = !rentedItemIds.contains(item.getItemId());
+            if (item.isAvailable() != available) {
+                item.setAvailable(available);
+                inventory.updateItem(item);
+                if (work == null) work = DataHandler.beginUnitOfWork();
+            }
+        }
+        if (work != null) {
+            inventory.enlist(work);
+            work.commit();
+        }
+    }
+
+    // Anropas med stateLock hållet (eller från konstruktorn)
+    private void publishActiveSnapshot() {
+        activeSnapshot = List.copyOf(activeRentals.values());
+    }
+
+    private Object lockFor(String itemId) {
+        return itemLocks[Math.floorMod(itemId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Lägger en avslutad uthyrnings intäkt i hinken för dess startdatum.
+     * Äldre uthyrningar utan ID räknas inte, precis som tidigare i intäktsgrafen.
+     */
+    private void addToRollup(Rental rental) {
+        if (rental.getId() == null) return;
+        LocalDate startDate = rental.getStartDate();
+        if (startDate != null) {
+            revenueRollup.add(startDate, rental.getTotalCost());
+        }
     }
 
     private void initializeNextId() {
-        long maxId = rentals.stream()
+        LongStream heapIds = rentals.stream()
                 .map(Rental::getId)
                 .filter(id -> id != null && id.matches("\\d+"))
-                .mapToLong(Long::parseLong)
+                .mapToLong(Long::parseLong);
+        long maxId = LongStream.concat(heapIds, history.maxNumericId().stream())
                 .max()
                 .orElse(1000L);
         this.nextId = new AtomicLong(maxId + 1);
@@ -51,29 +167,58 @@ public class RentalService {
         return String.valueOf(nextId.getAndIncrement());
     }
 
+    /**
+     * Hyr ut ett item. Tillgängligheten kontrolleras och tas under itemets lås,
+     * så två samtidiga försök på samma item kan aldrig båda lyckas.
+     * @return true om uthyrningen skapades och journalfördes.
+     */
     public boolean rentItem(String memberId, String itemId, PricePolicy policy) {
         Optional<Member> memberOpt = memberRegistry.findMemberById(memberId);
         Optional<Item> itemOpt = inventory.findItemById(itemId);
-
-        if (memberOpt.isPresent() && itemOpt.isPresent()) {
-            Item item = itemOpt.get();
-            Member member = memberOpt.get();
-
-            if (item.isAvailable()) {
-                Rental rental = new Rental(generateId(), memberId, itemId, policy);
-                rentals.add(rental);
-
+        if (memberOpt.isEmpty() || itemOpt.isEmpty()) {
+            return false;
+        }
+        Item item = itemOpt.get();
+        Member member = memberOpt.get();
+
+        Rental rental;
+        boolean logged;
+        synchronized (lockFor(item.getItemId())) {
+            if (!item.isAvailable()) {
+                return false;
+            }
+            // Under itemets monitor, så att en sparkopia ser båda ändringarna eller ingen
+            synchronized (item) {
                 item.setAvailable(false);
                 item.incrementRentalCount();
-                inventory.updateItem(item);
-
-                member.addRentalToHistory(rental.getId());
-                memberRegistry.updateMember(member);
+            }
 
-                return saveData();
+            rental = new Rental(generateId(), memberId, itemId, policy);
+            synchronized (stateLock) {
+                rentals.add(rental);
+                activeRentals.put(rental.getId(), rental);
+                publishActiveSnapshot();
             }
+            version.incrementAndGet();
+
+            // Journalen skrivs under itemets lås, så START alltid hamnar före END för samma item
+            logged = DataHandler.appendRentalStarted(rental);
         }
-        return false;
+        // Utanför itemets lås: updateItem publicerar händelser och indexerar om efter aktuellt läge
+        inventory.updateItem(item);
+
+        synchronized (member) {
+            member.addRentalToHistory(rental.getId());
+        }
+        // Uthyrningen är redan beständig via journalen; item och medlem sparas i en gemensam flush
+        UnitOfWork work = DataHandler.beginUnitOfWork();
+        inventory.enlist(work);
+        memberRegistry.updateMember(member, work);
+        work.commit();
+
+        checkpointIfDue();
+        eventBus.publish(DomainEvent.rentalStarted(rental));
+        return logged;
     }
 
     public boolean rentItem(String memberId, String itemId) {
@@ -81,55 +226,103 @@ public class RentalService {
     }
 
     public Optional<Double> endRental(String rentalId) {
-        Optional<Rental> rentalOpt = rentals.stream()
-                .filter(r -> r.getId() != null && r.getId().equals(rentalId) && r.isActive())
-                .findFirst();
-
-        if (rentalOpt.isPresent()) {
-            Rental rental = rentalOpt.get();
-            Optional<Item> itemOpt = inventory.findItemById(rental.getItemId());
-
-            double finalPrice = 0.0;
+        if (rentalId == null) return Optional.empty();
+        Rental rental;
+        synchronized (stateLock) {
+            // Avslutade uthyrningar finns bara i historiken och kan inte avslutas igen
+            rental = activeRentals.get(rentalId);
+        }
+        if (rental == null) return Optional.empty();
+
+        Optional<Item> itemOpt = inventory.findItemById(rental.getItemId());
+        double finalPrice = 0.0;
+        synchronized (lockFor(rental.getItemId())) {
+            // Kontrolleras under låset: två kassor som checkar ut samma uthyrning debiterar bara en gång
+            if (!rental.isActive()) {
+                return Optional.empty();
+            }
             if (itemOpt.isPresent()) {
                 finalPrice = rental.getCurrentCost(itemOpt.get().getCurrentRentalPrice());
             }
 
             rental.endRental(finalPrice);
-
-            if (itemOpt.isPresent()) {
-                Item item = itemOpt.get();
-                item.setAvailable(true);
-                inventory.updateItem(item);
+            synchronized (stateLock) {
+                activeRentals.remove(rental.getId());
+                history.add(rental);
+                rentals.remove(rental);
+                publishActiveSnapshot();
             }
+            version.incrementAndGet();
+            itemOpt.ifPresent(item -> item.setAvailable(true));
 
-            saveData();
-            return Optional.of(finalPrice);
+            DataHandler.appendRentalEnded(rental);
         }
-        return Optional.empty();
+        itemOpt.ifPresent(inventory::updateItem);
+
+        stats.revenueAdded(finalPrice);
+        addToRollup(rental);
+        UnitOfWork work = DataHandler.beginUnitOfWork();
+        inventory.enlist(work);
+        work.commit();
+        checkpointIfDue();
+        eventBus.publish(DomainEvent.rentalEnded(rental));
+        return Optional.of(finalPrice);
     }
 
+    /**
+     * Returnerar en kopia av de aktiva uthyrningarna. Kostar O(antal aktiva), inte O(historik).
+     */
     public List<Rental> getActiveRentals() {
-        return rentals.stream()
-                .filter(r -> r.getId() != null && r.isActive())
-                .collect(Collectors.toList());
+        return new ArrayList<>(activeSnapshot);
     }
 
-    // NY METOD: Hämtar all historik (inklusive avslutade)
-    public List<Rental> getRentalsHistory() {
-        return new ArrayList<>(rentals);
+    /**
+     * Oföränderlig ögonblicksbild av de aktiva uthyrningarna i startordning, utan kopiering.
+     * Säker att läsa från vilken tråd som helst; för att följa ändringar kombineras den med
+     * RENTAL_STARTED/RENTAL_ENDED på händelsebussen.
+     */
+    public List<Rental> getActiveRentalsSnapshot() {
+        return activeSnapshot;
+    }
+
+    public int getActiveRentalCount() {
+        return activeSnapshot.size();
+    }
+
+    public Optional<Rental> findActiveRentalForItem(String itemId) {
+        return activeSnapshot.stream()
+                .filter(r -> r.getItemId().equals(itemId))
+                .findFirst();
     }
 
     public List<Rental> getRentalsForMember(String memberId) {
-        return rentals.stream()
-                .filter(r -> r.getMemberId().equals(memberId))
-                .collect(Collectors.toList());
+        // Under låset så att en uthyrning som just avslutas varken missas eller kommer med två gånger
+        synchronized (stateLock) {
+            List<Rental> result = history.forMember(memberId);
+            for (Rental rental : rentals) {
+                if (memberId.equals(rental.getMemberId())) result.add(rental);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Intäkt per startdatum för avslutade uthyrningar som startade {@code from} eller senare.
+     * Räknas direkt på historikens kolumner, utan att skapa Rental-objekt.
+     */
+    public Map<LocalDate, Double> getCompletedRevenueByDay(LocalDate from) {
+        return history.revenueByDay(from);
+    }
+
+    /**
+     * Intäkt per item-ID för avslutade uthyrningar som startade {@code from} eller senare.
+     */
+    public Map<String, Double> getCompletedRevenueByItem(LocalDate from) {
+        return history.revenueByItem(from);
     }
 
     public double getTotalRevenue() {
-        return rentals.stream()
-                .filter(r -> !r.isActive())
-                .mapToDouble(Rental::getTotalCost)
-                .sum();
+        return stats.getTotalRevenue();
     }
 
     public Map<LocalDate, Double> getRevenueData(String period) {
@@ -144,54 +337,76 @@ public class RentalService {
             default:        startDate = now.minusWeeks(1); break;
         }
 
-        Map<LocalDate, Double> revenueMap = new HashMap<>();
+        // Besvaras från dagshinkarna: O(dagar i perioden), oberoende av historikens storlek
+        return revenueRollup.range(startDate, now);
+    }
 
-        if (period.equals("1 Dag")) {
-            revenueMap.put(now, 0.0);
-        } else {
-            for (LocalDate date = startDate; !date.isAfter(now); date = date.plusDays(1)) {
-                revenueMap.put(date, 0.0);
-            }
-        }
+    public Optional<Member> getMemberById(String memberId) {
+        return memberRegistry.findMemberById(memberId);
+    }
 
-        List<Rental> completedRentals = rentals.stream()
-                .filter(r -> !r.isActive() && r.getId() != null)
-                .collect(Collectors.toList());
+    /**
+     * Hela historiken för persistensen utan att skapa objekt för alla rader på en gång:
+     * avslutade uthyrningar läses ur historiken en bit i taget varje gång följden itereras,
+     * de aktiva från en kopia tagen nu. Ger samma poster varje gång den itereras.
+     */
+    private Iterable<Rental> persistentSnapshot() {
+        int rows;
+        List<Rental> heap;
+        synchronized (stateLock) {
+            rows = history.size();
+            // Bara de aktiva (och äldre utan ID) ligger på heapen; kopian är O(aktiva), inte O(historik)
+            heap = List.copyOf(rentals);
+        }
+        return () -> new Iterator<>() {
+            private final Iterator<Rental> archived = history.cursor(rows);
+            private final Iterator<Rental> active = heap.iterator();
 
-        for (Rental r : completedRentals) {
-            LocalDateTime rentalDate = parseDateTime(r.getStartTime());
+            @Override
+            public boolean hasNext() {
+                return archived.hasNext() || active.hasNext();
+            }
 
-            if (rentalDate != null) {
-                LocalDate dateKey = rentalDate.toLocalDate();
+            @Override
+            public Rental next() {
+                return archived.hasNext() ? archived.next() : active.next();
+            }
+        };
+    }
 
-                if ((dateKey.isEqual(startDate) || dateKey.isAfter(startDate)) &&
-                        (dateKey.isEqual(now) || dateKey.isBefore(now))) {
+    public long getVersion() {
+        return version.get();
+    }
 
-                    revenueMap.merge(dateKey, r.getTotalCost(), Double::sum);
-                }
-            }
-        }
-        return revenueMap;
-    }
-
-    public LocalDateTime parseDateTime(String timeStr) {
-        if (timeStr == null) return null;
-        try {
-            return LocalDateTime.parse(timeStr, DATE_FORMATTER);
-        } catch (Exception e) {
-            try {
-                return LocalDateTime.parse(timeStr, OLD_DATE_FORMATTER);
-            } catch (Exception ex) {
-                return null;
-            }
-        }
+    /**
+     * @return true om något ändrats sedan senaste lyckade sparning.
+     */
+    public boolean hasUnsavedChanges() {
+        return version.get() != savedVersion.get();
     }
 
-    public Optional<Member> getMemberById(String memberId) {
-        return memberRegistry.findMemberById(memberId);
+    /**
+     * Sparar uthyrningarna som en ny checkpoint i bakgrunden. Varje ändring är redan beständig
+     * via journalen; checkpointen kortar journalen och gör nästa uppstart snabb. Historiken
+     * strömmas ur kolumnlagret, så ingen lista med hela historiken byggs upp.
+     * @return Future som blir true när checkpointen nått disken; false om den misslyckades
+     *         eller om en annan checkpoint redan pågick (då försöker nästa autosave igen).
+     */
+    public CompletableFuture<Boolean> saveDataAsync() {
+        // Versionen läses före bilden (som tas efter journalens offset), så bilden är minst så ny
+        long v = version.get();
+        return DataHandler.checkpointRentalsAsync(this::persistentSnapshot).thenApply(ok -> {
+            if (ok) savedVersion.accumulateAndGet(v, Math::max);
+            return ok;
+        });
     }
 
-    public boolean saveData() {
-        return DataHandler.saveRentals(rentals);
+    /**
+     * Startar en checkpoint i bakgrunden när journalen vuxit tillräckligt.
+     */
+    private void checkpointIfDue() {
+        if (DataHandler.isRentalCheckpointDue()) {
+            DataHandler.checkpointRentalsAsync(this::persistentSnapshot);
+        }
     }
 }
\ No newline at end of file
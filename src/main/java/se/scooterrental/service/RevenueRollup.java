@@ -0,0 +1,45 @@
+package se.scooterrental.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Förberäknad intäkt per dag (startdatum för uthyrningen).
+ * Uppdateras när en uthyrning avslutas, så att vecko-/månads-/årsvyer
+ * besvaras i O(dagar) oavsett hur stor historiken är.
+ */
+class RevenueRollup {
+
+    private final NavigableMap<LocalDate, Double> dailyRevenue = new TreeMap<>();
+
+    synchronized void clear() {
+        dailyRevenue.clear();
+    }
+
+    /**
+     * Lägger till intäkt i dagens hink.
+     * @param day Uthyrningens startdatum.
+     * @param amount Belopp att lägga till.
+     */
+    synchronized void add(LocalDate day, double amount) {
+        dailyRevenue.merge(day, amount, Double::sum);
+    }
+
+    /**
+     * Returnerar intäkt per dag i intervallet, där dagar utan intäkt har värdet 0.
+     * @param from Första dagen (inklusive).
+     * @param to Sista dagen (inklusive).
+     * @return Ny karta med en post per dag.
+     */
+    synchronized Map<LocalDate, Double> range(LocalDate from, LocalDate to) {
+        Map<LocalDate, Double> result = new HashMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            result.put(date, 0.0);
+        }
+        result.putAll(dailyRevenue.subMap(from, true, to, true));
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package se.scooterrental.service;
+
+import se.scooterrental.model.Rental;
+import se.scooterrental.persistence.DataHandler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Läser in medlemmar, items och uthyrningar parallellt vid uppstart.
+ * Varje fil tolkas och indexeras på en egen tråd; RentalService kopplas ihop när
+ * registret och lagret är klara. Total tid blir ungefär den långsammaste filens.
+ */
+public final class StartupLoader {
+
+    /**
+     * De färdiga tjänsterna.
+     */
+    public static final class Services {
+        private final MemberRegistry memberRegistry;
+        private final Inventory inventory;
+        private final RentalService rentalService;
+
+        private Services(MemberRegistry memberRegistry, Inventory inventory, RentalService rentalService) {
+            this.memberRegistry = memberRegistry;
+            this.inventory = inventory;
+            this.rentalService = rentalService;
+        }
+
+        public MemberRegistry getMemberRegistry() { return memberRegistry; }
+        public Inventory getInventory() { return inventory; }
+        public RentalService getRentalService() { return rentalService; }
+    }
+
+    private StartupLoader() {
+    }
+
+    /**
+     * Läser in all data och bygger tjänsterna. Blockerar tills allt är klart.
+     */
+    public static Services load(DashboardStats stats, DomainEventBus eventBus) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+            Thread thread = new Thread(r, "Startup-Loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // Tolkning och indexbygge för medlemmar och items sker i respektive konstruktor
+            CompletableFuture<MemberRegistry> members = CompletableFuture.supplyAsync(
+                    () -> new MemberRegistry(DataHandler.loadMembers(), stats, eventBus), executor);
+            CompletableFuture<Inventory> items = CompletableFuture.supplyAsync(
+                    () -> new Inventory(DataHandler.loadItems(), stats, eventBus), executor);
+            CompletableFuture<List<Rental>> rentals = CompletableFuture.supplyAsync(
+                    DataHandler::loadRentals, executor);
+
+            MemberRegistry memberRegistry = members.join();
+            Inventory inventory = items.join();
+            RentalService rentalService = new RentalService(memberRegistry, inventory, rentals.join(), stats, eventBus);
+            return new Services(memberRegistry, inventory, rentalService);
+        } catch (CompletionException e) {
+            // Packa upp så att felet ser ut som vid sekventiell inläsning
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package se.scooterrental.ui.views;
 
+import javafx.application.Platform;
 import javafx.scene.control.Tab;
 import javafx.scene.layout.VBox;
 
@@ -35,4 +36,25 @@ public abstract class BaseView {
     public Tab getTab() {
         return tab;
     }
-}
\ No newline at end of file
+
+    /**
+     * Anropas när vyns flik blir synlig. Vyer med lyssnare eller timers startar dem här
+     * och läser om det som kan ha ändrats medan fliken var dold.
+     */
+    public void onShown() {
+    }
+
+    /**
+     * Anropas när vyns flik döljs (annan flik vald eller utloggning). Pausa lyssnare och timers här.
+     */
+    public void onHidden() {
+    }
+
+    /**
+     * Kör en UI-uppdatering på FX-tråden. Händelser från tjänsterna kan komma från andra trådar.
+     */
+    protected static void runOnFxThread(Runnable action) {
+        if (Platform.isFxApplicationThread()) action.run();
+        else Platform.runLater(action);
+    }
+}
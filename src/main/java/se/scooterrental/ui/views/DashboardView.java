@@ -1,8 +1,9 @@
 package se.scooterrental.ui.views;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -20,19 +21,22 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 import org.kordamp.ikonli.javafx.FontIcon;
 import se.scooterrental.model.Item;
 import se.scooterrental.model.Member;
 import se.scooterrental.model.Rental;
+import se.scooterrental.service.DashboardStats;
+import se.scooterrental.service.DomainEvent;
+import se.scooterrental.service.DomainEventBus;
 import se.scooterrental.service.Inventory;
 import se.scooterrental.service.MemberRegistry;
+import se.scooterrental.service.RentalCostEngine;
 import se.scooterrental.service.RentalService;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,6 +45,12 @@ public class DashboardView extends BaseView {
     private final RentalService rentalService;
     private final Inventory inventory;
     private final MemberRegistry memberRegistry;
+    private final DashboardStats stats;
+    private final RentalCostEngine costEngine;
+    private final DomainEventBus eventBus;
+
+    // Senaste svepet från kostnadsmotorn. Bara kostnadscellerna lyssnar på den.
+    private final ObjectProperty<RentalCostEngine.Snapshot> costSnapshot = new SimpleObjectProperty<>();
 
     private TableView<Rental> activeRentalsTable;
     private ObservableList<Rental> activeRentalsList;
@@ -55,43 +65,83 @@ public class DashboardView extends BaseView {
     private PieChart popularityChart;
     private ComboBox<String> periodSelector;
 
-    private Timeline costTicker;
-    private int tickerCounter = 0;
-
-    public DashboardView(RentalService rentalService, Inventory inventory, MemberRegistry memberRegistry) {
+    public DashboardView(RentalService rentalService, Inventory inventory, MemberRegistry memberRegistry,
+                         DashboardStats stats, RentalCostEngine costEngine, DomainEventBus eventBus) {
         super("Översikt");
         this.rentalService = rentalService;
         this.inventory = inventory;
         this.memberRegistry = memberRegistry;
-        this.activeRentalsList = FXCollections.observableArrayList(rentalService.getActiveRentals());
+        this.stats = stats;
+        this.costEngine = costEngine;
+        this.eventBus = eventBus;
+        this.activeRentalsList = FXCollections.observableArrayList(rentalService.getActiveRentalsSnapshot());
+        this.costSnapshot.set(costEngine.getSnapshot());
 
         setupUI();
-        startTicker();
     }
 
-    private void startTicker() {
-        KeyFrame updateFrame = new KeyFrame(Duration.seconds(1), event -> {
-            if (activeRentalsTable != null) {
-                activeRentalsList.setAll(rentalService.getActiveRentals());
-                activeRentalsTable.refresh();
-                updateQuickStats();
-
-                tickerCounter++;
-                if (tickerCounter >= 5) {
-                    updateRevenueChart();
-                    updatePopularityChart();
-                    tickerCounter = 0;
-                }
+    // Uppdaterar bara det som händelsen påverkar, istället för att polla allt varje sekund
+    private final Consumer<DomainEvent> eventListener = event -> runOnFxThread(() -> onDomainEvent(event));
+
+    private void onDomainEvent(DomainEvent event) {
+        switch (event.getType()) {
+            case RENTAL_STARTED -> {
+                activeRentalsList.add(event.getRental());
+                updatePopularityChart();
             }
-        });
+            case RENTAL_ENDED -> {
+                activeRentalsList.remove(event.getRental());
+                updateRevenueChart();
+            }
+            case ITEM_ADDED, ITEM_UPDATED -> updatePopularityChart();
+            default -> { }
+        }
+        updateQuickStats();
+    }
+
+    // Kostnadsmotorn körs på egen tråd; snapshoten lämnas över till FX-tråden
+    private final Runnable costListener = this::onCostsRecomputed;
 
-        costTicker = new Timeline(updateFrame);
-        costTicker.setCycleCount(Timeline.INDEFINITE);
-        costTicker.play();
+    private void onCostsRecomputed() {
+        RentalCostEngine.Snapshot snapshot = costEngine.getSnapshot();
+        Platform.runLater(() -> costSnapshot.set(snapshot));
     }
 
-    public void stopTicker() {
-        if (costTicker != null) costTicker.stop();
+    // Sant medan fliken visas och vyn lyssnar; stale om något kan ha missats medan den var dold
+    private boolean shown;
+    private boolean stale;
+
+    @Override
+    public void onShown() {
+        if (shown) return;
+        shown = true;
+        if (stale) {
+            activeRentalsList.setAll(rentalService.getActiveRentalsSnapshot());
+            updateRevenueChart();
+            updatePopularityChart();
+            updateQuickStats();
+            stale = false;
+        }
+        costSnapshot.set(costEngine.getSnapshot());
+        startTicker();
+    }
+
+    @Override
+    public void onHidden() {
+        if (!shown) return;
+        shown = false;
+        stale = true;
+        stopTicker();
+    }
+
+    private void startTicker() {
+        eventBus.subscribe(eventListener);
+        costEngine.addListener(costListener);
+    }
+
+    private void stopTicker() {
+        eventBus.unsubscribe(eventListener);
+        costEngine.removeListener(costListener);
     }
 
     @Override
@@ -280,7 +330,7 @@ public class DashboardView extends BaseView {
 
     public void refreshData() {
         Platform.runLater(() -> {
-            activeRentalsList.setAll(rentalService.getActiveRentals());
+            activeRentalsList.setAll(rentalService.getActiveRentalsSnapshot());
             updateRevenueChart();
             updatePopularityChart();
             updateQuickStats();
@@ -288,17 +338,18 @@ public class DashboardView extends BaseView {
     }
 
     private void updateQuickStats() {
-        long totalMembers = memberRegistry.getMembers().size();
+        // Alla värden underhålls inkrementellt av tjänsterna, så läsningen är O(1)
+        long totalMembers = stats.getMemberCount();
         totalMembersLabel.setText(String.valueOf(totalMembers));
 
         int activeRentals = activeRentalsList.size();
         activeCountLabel.setText(String.valueOf(activeRentals));
 
-        long totalVehicles = inventory.getTotalCount();
-        long rentedVehicles = inventory.getRentedCount();
+        long totalVehicles = stats.getItemCount();
+        long rentedVehicles = stats.getRentedCount();
         vehicleStatsLabel.setText(String.format("%d / %d", totalVehicles, rentedVehicles));
 
-        double revenue = rentalService.getTotalRevenue();
+        double revenue = stats.getTotalRevenue();
         totalRevenueLabel.setText(String.format("%.0f kr", revenue));
     }
 
@@ -393,7 +444,6 @@ public class DashboardView extends BaseView {
         header.setStyle("-fx-font-size: 22px; -fx-font-weight: bold;");
 
         // 1. Dataförberedelse
-        List<Rental> allRentals = rentalService.getRentalsHistory();
         LocalDate now = LocalDate.now();
         LocalDate startDate;
         boolean groupByMonth = "1 År".equals(period);
@@ -405,15 +455,11 @@ public class DashboardView extends BaseView {
             default:        startDate = now.minusWeeks(1); break;
         }
 
-        List<Rental> filteredRentals = allRentals.stream()
-                .filter(r -> !r.isActive()) // Endast avslutade (som har genererat intäkt)
-                .filter(r -> {
-                    LocalDateTime dt = rentalService.parseDateTime(r.getStartTime());
-                    return dt != null && !dt.toLocalDate().isBefore(startDate);
-                })
-                .collect(Collectors.toList());
+        // Endast avslutade (som har genererat intäkt); summeras direkt i historikens kolumner
+        Map<LocalDate, Double> revenueByDay = rentalService.getCompletedRevenueByDay(startDate);
+        Map<String, Double> revenueByItem = rentalService.getCompletedRevenueByItem(startDate);
 
-        double totalRevenue = filteredRentals.stream().mapToDouble(Rental::getTotalCost).sum();
+        double totalRevenue = revenueByDay.values().stream().mapToDouble(Double::doubleValue).sum();
 
         // --- GRAF 1: Intäkt över tid (BarChart) ---
         CategoryAxis xAxis = new CategoryAxis();
@@ -426,12 +472,10 @@ public class DashboardView extends BaseView {
         barChart.setLegendVisible(false);
 
         // Gruppera data
-        Map<String, Double> revenueOverTime = filteredRentals.stream()
-                .collect(Collectors.groupingBy(r -> {
-                    LocalDateTime dt = rentalService.parseDateTime(r.getStartTime());
-                    if (groupByMonth) return dt.format(DateTimeFormatter.ofPattern("yyyy-MM"));
-                    return dt.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-                }, TreeMap::new, Collectors.summingDouble(Rental::getTotalCost)));
+        DateTimeFormatter bucketFormat = DateTimeFormatter.ofPattern(groupByMonth ? "yyyy-MM" : "yyyy-MM-dd");
+        Map<String, Double> revenueOverTime = revenueByDay.entrySet().stream()
+                .collect(Collectors.groupingBy(e -> e.getKey().format(bucketFormat),
+                        TreeMap::new, Collectors.summingDouble(Map.Entry::getValue)));
 
         XYChart.Series<String, Number> timeSeries = new XYChart.Series<>();
         revenueOverTime.forEach((date, rev) -> {
@@ -452,11 +496,11 @@ public class DashboardView extends BaseView {
         PieChart pieChart = new PieChart();
         pieChart.setTitle("Intäkter per Modell (Top 5)");
 
-        Map<String, Double> revenueByModel = filteredRentals.stream()
-                .collect(Collectors.groupingBy(r -> {
-                    Optional<Item> item = inventory.findItemById(r.getItemId());
+        Map<String, Double> revenueByModel = revenueByItem.entrySet().stream()
+                .collect(Collectors.groupingBy(e -> {
+                    Optional<Item> item = inventory.findItemById(e.getKey());
                     return item.map(Item::getName).orElse("Okänd");
-                }, Collectors.summingDouble(Rental::getTotalCost)));
+                }, Collectors.summingDouble(Map.Entry::getValue)));
 
         List<PieChart.Data> pieData = revenueByModel.entrySet().stream()
                 .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
@@ -609,7 +653,8 @@ public class DashboardView extends BaseView {
 
         Optional<Item> itemOpt = inventory.findItemById(rental.getItemId());
         String itemName = itemOpt.map(Item::getName).orElse("Okänd");
-        double currentCost = rental.getCurrentCost(itemOpt.map(Item::getCurrentRentalPrice).orElse(0.0));
+        Double cost = costEngine.getCost(rental);
+        double currentCost = cost != null ? cost : 0.0;
 
         root.getChildren().addAll(
                 header,
@@ -648,9 +693,13 @@ public class DashboardView extends BaseView {
 
         TableColumn<Rental, String> costCol = new TableColumn<>("Kostnad");
         costCol.setCellValueFactory(cell -> {
-            Optional<Item> i = inventory.findItemById(cell.getValue().getItemId());
-            double price = i.map(Item::getCurrentRentalPrice).orElse(0.0);
-            return new javafx.beans.property.SimpleStringProperty(String.format("%.2f kr", cell.getValue().getCurrentCost(price)));
+            // Läses från kostnadsmotorns senaste svep; bara denna kolumn ritas om vid nytt svep
+            Rental rental = cell.getValue();
+            return Bindings.createStringBinding(() -> {
+                // Egenskapen måste läsas här; annars förblir den ogiltig och senare svep tystas
+                Double cost = costEngine.getCost(rental, costSnapshot.get());
+                return String.format("%.2f kr", cost != null ? cost : 0.0);
+            }, costSnapshot);
         });
 
         table.getColumns().addAll(idCol, itemCol, startCol, costCol);
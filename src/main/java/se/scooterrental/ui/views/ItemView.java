@@ -17,20 +17,25 @@ import se.scooterrental.model.Scooter;
 import se.scooterrental.model.Sled;
 import se.scooterrental.model.Rental;
 import se.scooterrental.model.Member;
+import se.scooterrental.service.DomainEvent;
+import se.scooterrental.service.DomainEventBus;
 import se.scooterrental.service.Inventory;
 import se.scooterrental.service.RentalService;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class ItemView extends BaseView {
 
     private final Inventory inventory;
     private final RentalService rentalService;
     private final boolean isAdmin;
-    private final Member currentMember;
+    private Member currentMember;
+    private final DomainEventBus eventBus;
 
     private TableView<Item> itemTable;
     private ObservableList<Item> itemList;
@@ -39,17 +44,56 @@ public class ItemView extends BaseView {
     private ComboBox<String> typeFilterBox;
     private CheckBox availableCheckBox;
 
-    public ItemView(Inventory inventory, RentalService rentalService, boolean isAdmin, Member currentMember) {
+    // Uppdaterar bara raden för det item som ändrats, istället för att söka om hela lagret
+    private final Consumer<DomainEvent> eventListener = event -> {
+        if (event.isItemEvent()) runOnFxThread(() -> applyItemChange(event.getItem()));
+    };
+
+    public ItemView(Inventory inventory, RentalService rentalService, boolean isAdmin, Member currentMember,
+                    DomainEventBus eventBus) {
         super(isAdmin ? "Lagerhantering" : "Boka Utrustning");
         this.inventory = inventory;
         this.rentalService = rentalService;
         this.isAdmin = isAdmin;
         this.currentMember = currentMember;
+        this.eventBus = eventBus;
         this.itemList = FXCollections.observableArrayList();
 
         setupUI();
     }
 
+    private boolean shown;
+    private boolean stale;
+
+    /**
+     * Binder medlemsvyn till den som loggat in; samma vy återanvänds för alla medlemmar.
+     * Sökning och markering från förra medlemmen rensas.
+     */
+    public void setCurrentMember(Member member) {
+        this.currentMember = member;
+        searchField.clear();
+        itemTable.getSelectionModel().clearSelection();
+    }
+
+    @Override
+    public void onShown() {
+        if (shown) return;
+        shown = true;
+        if (stale) {
+            refreshList(); // Ändringar medan fliken var dold
+            stale = false;
+        }
+        eventBus.subscribe(eventListener);
+    }
+
+    @Override
+    public void onHidden() {
+        if (!shown) return;
+        shown = false;
+        stale = true;
+        eventBus.unsubscribe(eventListener);
+    }
+
     @Override
     protected void setupUI() {
         Label title = new Label(isAdmin ? "Uthyrningslager (Admin)" : "Tillgänglig Utrustning");
@@ -139,6 +183,18 @@ public class ItemView extends BaseView {
         itemList.setAll(inventory.searchItems(searchField.getText(), typeFilterBox.getValue(), availableCheckBox.isSelected()));
     }
 
+    private void applyItemChange(Item item) {
+        boolean matches = inventory.matchesSearch(item, searchField.getText().toLowerCase(Locale.ROOT),
+                typeFilterBox.getValue(), availableCheckBox.isSelected());
+        int index = itemList.indexOf(item);
+        if (index >= 0) {
+            if (matches) itemList.set(index, item); // Ritar om raden (t.ex. ny status)
+            else itemList.remove(index);
+        } else if (matches) {
+            itemList.add(item);
+        }
+    }
+
     private TableView<Item> createItemTable() {
         TableView<Item> table = new TableView<>();
         table.setItems(itemList);
@@ -200,9 +256,7 @@ public class ItemView extends BaseView {
         layout.getChildren().addAll(nameLbl, new Label(selected.getUniqueInfo()), statusLbl);
 
         if (!selected.isAvailable()) {
-            Optional<Rental> activeRental = rentalService.getActiveRentals().stream()
-                    .filter(r -> r.getItemId().equals(selected.getItemId()))
-                    .findFirst();
+            Optional<Rental> activeRental = rentalService.findActiveRentalForItem(selected.getItemId());
 
             if (activeRental.isPresent()) {
                 Rental r = activeRental.get();
@@ -238,7 +292,7 @@ public class ItemView extends BaseView {
             showAlert("Fel", "Välj en ledig produkt."); return;
         }
         if (rentalService.rentItem(currentMember.getMemberId(), selected.getItemId())) {
-            showAlert("Succé", "Bokad!"); refreshList();
+            showAlert("Succé", "Bokad!");
         } else {
             showAlert("Fel", "Bokning misslyckades.");
         }
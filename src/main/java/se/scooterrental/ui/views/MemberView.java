@@ -11,10 +11,13 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import se.scooterrental.model.Member;
+import se.scooterrental.service.DomainEvent;
+import se.scooterrental.service.DomainEventBus;
 import se.scooterrental.service.MemberRegistry;
 
+import java.util.Locale;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Vy för att visa, söka, redigera och ta bort medlemmar.
@@ -25,19 +28,53 @@ import java.util.stream.Collectors;
 public class MemberView extends BaseView {
 
     private final MemberRegistry registry;
+    private final DomainEventBus eventBus;
     private TableView<Member> table;
     private ObservableList<Member> memberList;
 
     // Filter & Sök
     private TextField searchField;
     private ComboBox<String> statusFilter; // "Alla", "STANDARD", "PREMIUM", "STUDENT"
+    private Label resultLabel;
 
-    public MemberView(MemberRegistry registry) {
+    // Tabellen visar bara de bäst rankade träffarna; resten nås genom att förfina sökningen
+    private static final int PAGE_SIZE = 200;
+
+    // Lägger till, ritar om eller tar bort en enskild rad när registret ändras
+    private final Consumer<DomainEvent> eventListener = event -> {
+        if (event.isMemberEvent()) runOnFxThread(() -> applyMemberChange(event));
+    };
+
+    public MemberView(MemberRegistry registry, DomainEventBus eventBus) {
         super("Medlemsregister");
         this.registry = registry;
-        this.memberList = FXCollections.observableArrayList(registry.getMembers());
+        this.eventBus = eventBus;
+        this.memberList = FXCollections.observableArrayList();
 
         setupUI();
+        filterMembers();
+    }
+
+    private boolean shown;
+    private boolean stale;
+
+    @Override
+    public void onShown() {
+        if (shown) return;
+        shown = true;
+        if (stale) {
+            filterMembers(); // Ändringar medan fliken var dold
+            stale = false;
+        }
+        eventBus.subscribe(eventListener);
+    }
+
+    @Override
+    public void onHidden() {
+        if (!shown) return;
+        shown = false;
+        stale = true;
+        eventBus.unsubscribe(eventListener);
     }
 
     @Override
@@ -82,10 +119,12 @@ public class MemberView extends BaseView {
         deleteButton.getStyleClass().add("red-button");
         deleteButton.setOnAction(e -> handleDeleteMember());
 
+        resultLabel = new Label();
+
         topBox.getChildren().addAll(
                 new Label("Sök:"), searchField,
                 new Label("Status:"), statusFilter,
-                addButton, editButton, deleteButton
+                addButton, editButton, deleteButton, resultLabel
         );
         rootLayout.getChildren().add(topBox);
 
@@ -248,13 +287,14 @@ public class MemberView extends BaseView {
 
                     if (isEditing) {
                         // Uppdatera befintlig
-                        memberToEdit.setMemberId(fullNewId);
-                        memberToEdit.setFirstName(fName);
-                        memberToEdit.setLastName(lName);
-                        memberToEdit.setPhone(phone);
-                        memberToEdit.setEmail(finalEmail); // Spara den genererade/validerade mailen
-                        memberToEdit.setStatus(status);
-                        registry.updateMember(memberToEdit); // Sparar också
+                        registry.editMember(memberToEdit, m -> { // Sparar också
+                            m.setMemberId(fullNewId);
+                            m.setFirstName(fName);
+                            m.setLastName(lName);
+                            m.setPhone(phone);
+                            m.setEmail(finalEmail); // Spara den genererade/validerade mailen
+                            m.setStatus(status);
+                        });
                         return memberToEdit;
                     } else {
                         // Skapa ny
@@ -278,7 +318,7 @@ public class MemberView extends BaseView {
         });
 
         dialog.showAndWait().ifPresent(m -> {
-            filterMembers(); // Uppdatera listan
+            // Listan uppdateras via MEMBER_ADDED/MEMBER_UPDATED
             showAlert(Alert.AlertType.INFORMATION, "Sparat", isEditing ? "Medlem uppdaterad." : "Ny medlem tillagd.");
         });
     }
@@ -303,7 +343,7 @@ public class MemberView extends BaseView {
 
             if (removed) {
                 // registry.saveData(); <-- Behövs inte, removeMember gör detta
-                filterMembers(); // Uppdatera UI
+                // Raden tas bort via MEMBER_REMOVED
                 showAlert(Alert.AlertType.INFORMATION, "Borttagen", "Medlemmen har tagits bort.");
             } else {
                 showAlert(Alert.AlertType.ERROR, "Fel", "Kunde inte ta bort medlemmen.");
@@ -312,23 +352,36 @@ public class MemberView extends BaseView {
     }
 
     private void filterMembers() {
-        String query = searchField.getText().toLowerCase();
+        MemberRegistry.SearchPage page = registry.searchMembers(searchField.getText(), selectedStatus(), PAGE_SIZE);
+        memberList.setAll(page.getMembers());
+        updateResultLabel(page.getTotalMatches());
+    }
+
+    private Member.MemberStatus selectedStatus() {
         String statusFilterVal = statusFilter.getValue();
+        return statusFilterVal == null || "Alla".equals(statusFilterVal) ? null : Member.MemberStatus.valueOf(statusFilterVal);
+    }
 
-        memberList.setAll(registry.getMembers().stream()
-                .filter(m -> {
-                    // Filtrera på text
-                    if (query.isEmpty()) return true;
-                    return m.getMemberId().toLowerCase().contains(query) ||
-                            m.getFirstName().toLowerCase().contains(query) ||
-                            m.getLastName().toLowerCase().contains(query);
-                })
-                .filter(m -> {
-                    // Filtrera på status
-                    if ("Alla".equals(statusFilterVal)) return true;
-                    return m.getStatus().name().equals(statusFilterVal);
-                })
-                .collect(Collectors.toList()));
+    private void updateResultLabel(int totalMatches) {
+        resultLabel.setText(totalMatches > memberList.size()
+                ? "Visar " + memberList.size() + " av " + totalMatches
+                : totalMatches + " träffar");
+    }
+
+    private boolean matchesFilter(Member m) {
+        return registry.matchesSearch(m, searchField.getText().toLowerCase(Locale.ROOT), selectedStatus());
+    }
+
+    private void applyMemberChange(DomainEvent event) {
+        Member member = event.getMember();
+        int index = memberList.indexOf(member);
+        boolean keep = event.getType() != DomainEvent.Type.MEMBER_REMOVED && matchesFilter(member);
+        if (index >= 0) {
+            if (keep) memberList.set(index, member);
+            else memberList.remove(index);
+        } else if (keep && memberList.size() < PAGE_SIZE) {
+            memberList.add(member);
+        }
     }
 
     private void showAlert(Alert.AlertType type, String title, String content) {
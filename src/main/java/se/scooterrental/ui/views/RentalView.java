@@ -1,8 +1,10 @@
 package se.scooterrental.ui.views;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -19,15 +21,18 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 import se.scooterrental.model.Item;
 import se.scooterrental.model.Member;
 import se.scooterrental.model.Rental;
 import se.scooterrental.model.PricePolicy;
 import se.scooterrental.model.StandardPricePolicy;
 import se.scooterrental.model.StudentPricePolicy;
+import se.scooterrental.service.DomainEvent;
+import se.scooterrental.service.DomainEventBus;
 import se.scooterrental.service.Inventory;
+import se.scooterrental.service.MemberLookupService;
 import se.scooterrental.service.MemberRegistry;
+import se.scooterrental.service.RentalCostEngine;
 import se.scooterrental.service.RentalService;
 
 import java.io.InputStream;
@@ -35,45 +40,91 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class RentalView extends BaseView {
 
+    // Antal medlemsförslag i uthyrningsdialogen
+    private static final int MEMBER_SUGGESTIONS = 8;
+
     private final RentalService rentalService;
     private final MemberRegistry memberRegistry;
+    private final MemberLookupService memberLookup;
     private final Inventory inventory;
+    private final RentalCostEngine costEngine;
+    private final DomainEventBus eventBus;
 
     private TableView<Rental> activeRentalsTable;
     private ObservableList<Rental> activeRentalsList;
 
-    private Timeline costTicker;
+    // Senaste svepet från kostnadsmotorn. Bara kostnadscellerna lyssnar på den.
+    private final ObjectProperty<RentalCostEngine.Snapshot> costSnapshot = new SimpleObjectProperty<>();
+
+    // Kostnadsmotorn körs på egen tråd; snapshoten lämnas över till FX-tråden
+    private final Runnable costListener = this::onCostsRecomputed;
+
+    private void onCostsRecomputed() {
+        RentalCostEngine.Snapshot snapshot = costEngine.getSnapshot();
+        Platform.runLater(() -> costSnapshot.set(snapshot));
+    }
 
-    public RentalView(RentalService rentalService, MemberRegistry memberRegistry, Inventory inventory) {
+    public RentalView(RentalService rentalService, MemberRegistry memberRegistry, MemberLookupService memberLookup,
+                      Inventory inventory, RentalCostEngine costEngine, DomainEventBus eventBus) {
         super("Kassa & Bokning");
 
         this.rentalService = rentalService;
         this.memberRegistry = memberRegistry;
+        this.memberLookup = memberLookup;
         this.inventory = inventory;
+        this.costEngine = costEngine;
+        this.eventBus = eventBus;
 
-        this.activeRentalsList = FXCollections.observableArrayList(rentalService.getActiveRentals());
+        this.activeRentalsList = FXCollections.observableArrayList(rentalService.getActiveRentalsSnapshot());
+        this.costSnapshot.set(costEngine.getSnapshot());
 
         setupUI();
+    }
+
+    // Håller tabellens lista i synk med tjänstens aktiva mängd, utan att läsa om hela listan
+    private final Consumer<DomainEvent> eventListener = event -> {
+        switch (event.getType()) {
+            case RENTAL_STARTED -> runOnFxThread(() -> activeRentalsList.add(event.getRental()));
+            case RENTAL_ENDED -> runOnFxThread(() -> activeRentalsList.remove(event.getRental()));
+            default -> { }
+        }
+    };
+
+    private boolean shown;
+    private boolean stale;
+
+    @Override
+    public void onShown() {
+        if (shown) return;
+        shown = true;
+        if (stale) {
+            activeRentalsList.setAll(rentalService.getActiveRentalsSnapshot());
+            stale = false;
+        }
+        costSnapshot.set(costEngine.getSnapshot());
         startTicker();
     }
 
-    private void startTicker() {
-        KeyFrame updateFrame = new KeyFrame(Duration.seconds(1), event -> {
-            if (activeRentalsTable != null) {
-                activeRentalsTable.refresh();
-            }
-        });
+    @Override
+    public void onHidden() {
+        if (!shown) return;
+        shown = false;
+        stale = true;
+        stopTicker();
+    }
 
-        costTicker = new Timeline(updateFrame);
-        costTicker.setCycleCount(Timeline.INDEFINITE);
-        costTicker.play();
+    private void startTicker() {
+        eventBus.subscribe(eventListener);
+        costEngine.addListener(costListener);
     }
 
-    public void stopTicker() {
-        if (costTicker != null) costTicker.stop();
+    private void stopTicker() {
+        eventBus.unsubscribe(eventListener);
+        costEngine.removeListener(costListener);
     }
 
     @Override
@@ -119,7 +170,6 @@ public class RentalView extends BaseView {
             Optional<Double> res = rentalService.endRental(selected.getRentalId());
             if (res.isPresent()) {
                 double finalPrice = res.get();
-                loadActiveRentals();
 
                 // Starta betalningsdialog
                 Optional<Member> member = memberRegistry.findMemberById(selected.getMemberId());
@@ -341,6 +391,15 @@ public class RentalView extends BaseView {
         TableColumn<Rental, Void> costCol = new TableColumn<>("Kostnad just nu");
         costCol.setStyle("-fx-alignment: CENTER;");
         costCol.setCellFactory(column -> new TableCell<>() {
+            // ChangeListener, inte InvalidationListener: ingen läser egenskapen i en tom cell,
+            // och en ogiltig egenskap som aldrig läses skickar inga fler invalideringar
+            private final ChangeListener<RentalCostEngine.Snapshot> changed = (obs, old, snapshot) -> updateItem(null, isEmpty());
+
+            {
+                // Ritar bara om denna cell när ett nytt svep kommer, inte hela tabellen
+                costSnapshot.addListener(new WeakChangeListener<>(changed));
+            }
+
             @Override
             protected void updateItem(Void item, boolean empty) {
                 super.updateItem(item, empty);
@@ -349,14 +408,9 @@ public class RentalView extends BaseView {
                 } else {
                     Rental rental = getTableView().getItems().get(getIndex());
                     if (rental != null) {
-                        Optional<Item> itemOpt = inventory.findItemById(rental.getItemId());
-                        if (itemOpt.isPresent()) {
-                            double basePrice = itemOpt.get().getCurrentRentalPrice();
-                            double currentCost = rental.getCurrentCost(basePrice);
-                            setText(String.format("%.2f kr", currentCost));
-                        } else {
-                            setText("N/A");
-                        }
+                        // Läses från kostnadsmotorns senaste svep istället för att räknas per cell
+                        Double currentCost = costEngine.getCost(rental, costSnapshot.get());
+                        setText(currentCost != null ? String.format("%.2f kr", currentCost) : "N/A");
                     }
                 }
             }
@@ -369,7 +423,7 @@ public class RentalView extends BaseView {
 
     private void loadActiveRentals() {
         Platform.runLater(() -> {
-            activeRentalsList.setAll(rentalService.getActiveRentals());
+            activeRentalsList.setAll(rentalService.getActiveRentalsSnapshot());
             activeRentalsTable.refresh();
         });
     }
@@ -384,13 +438,19 @@ public class RentalView extends BaseView {
         grid.setVgap(10);
         grid.setPadding(new Insets(20));
 
-        List<Member> allMembers = memberRegistry.getMembers();
-        ComboBox<Member> memberComboBox = new ComboBox<>(FXCollections.observableArrayList(allMembers));
-        memberComboBox.setPromptText("Välj Medlem");
-        memberComboBox.setCellFactory(lv -> new ListCell<>() {
+        // Medlemmen söks fram i stället för att väljas ur hela registret; felstavningar tolereras
+        TextField memberSearchField = new TextField();
+        memberSearchField.setPromptText("Sök namn eller medlems-ID");
+        ListView<Member> memberSuggestions = new ListView<>();
+        memberSuggestions.setPrefHeight(MEMBER_SUGGESTIONS * 26);
+        memberSuggestions.setCellFactory(lv -> new ListCell<>() {
             @Override protected void updateItem(Member m, boolean e) { super.updateItem(m, e); setText(e || m == null ? null : m.getFirstName() + " " + m.getLastName() + " (" + m.getMemberId() + ")"); }
         });
-        memberComboBox.setButtonCell(memberComboBox.getCellFactory().call(null));
+        memberSearchField.textProperty().addListener((obs, oldText, newText) -> {
+            memberSuggestions.getItems().setAll(memberLookup.lookup(newText, MEMBER_SUGGESTIONS));
+            memberSuggestions.getSelectionModel().selectFirst();
+        });
+        VBox memberPicker = new VBox(5, memberSearchField, memberSuggestions);
 
         List<Item> availableItems = inventory.getAvailableItems();
         ComboBox<Item> itemComboBox = new ComboBox<>(FXCollections.observableArrayList(availableItems));
@@ -408,7 +468,7 @@ public class RentalView extends BaseView {
         policyComboBox.setButtonCell(policyComboBox.getCellFactory().call(null));
         policyComboBox.getSelectionModel().selectFirst();
 
-        grid.add(new Label("Medlem:"), 0, 0); grid.add(memberComboBox, 1, 0);
+        grid.add(new Label("Medlem:"), 0, 0); grid.add(memberPicker, 1, 0);
         grid.add(new Label("Utrustning:"), 0, 1); grid.add(itemComboBox, 1, 1);
         grid.add(new Label("Policy:"), 0, 2); grid.add(policyComboBox, 1, 2);
 
@@ -418,7 +478,7 @@ public class RentalView extends BaseView {
 
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == startBtn) {
-                Member m = memberComboBox.getValue();
+                Member m = memberSuggestions.getSelectionModel().getSelectedItem();
                 Item i = itemComboBox.getValue();
                 PricePolicy p = policyComboBox.getValue();
                 if (m != null && i != null && p != null) {
@@ -429,7 +489,7 @@ public class RentalView extends BaseView {
             }
             return null;
         });
-        dialog.showAndWait().ifPresent(r -> loadActiveRentals());
+        dialog.showAndWait();
     }
 
     private void showAlert(Alert.AlertType type, String title, String message) {
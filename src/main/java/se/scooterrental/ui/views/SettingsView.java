@@ -9,17 +9,24 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import org.kordamp.ikonli.javafx.FontIcon;
 import se.scooterrental.persistence.ConfigHandler;
+import se.scooterrental.persistence.DataHandler;
+import se.scooterrental.service.Inventory;
+import se.scooterrental.service.MemberRegistry;
 
 import java.util.function.Consumer;
 
 public class SettingsView extends BaseView {
 
     private final Consumer<Boolean> onThemeToggle; // Callback för att byta tema
+    private final MemberRegistry memberRegistry;
+    private final Inventory inventory;
     private final String appVersion = "1.0.3"; // Versionsnummer
 
-    public SettingsView(Consumer<Boolean> onThemeToggle) {
+    public SettingsView(Consumer<Boolean> onThemeToggle, MemberRegistry memberRegistry, Inventory inventory) {
         super("Inställningar");
         this.onThemeToggle = onThemeToggle;
+        this.memberRegistry = memberRegistry;
+        this.inventory = inventory;
         setupUI();
     }
 
@@ -83,7 +90,19 @@ public class SettingsView extends BaseView {
         appearanceBox.getChildren().add(themeToggle);
 
 
-        // --- SEKTION 3: Om Applikationen ---
+        // --- SEKTION 3: Lagring ---
+        VBox storageBox = createSection("Lagring");
+
+        Label storageLabel = new Label();
+        Button convertBtn = new Button("Konvertera till NDJSON");
+        convertBtn.setGraphic(new FontIcon("mdi2f-file-swap"));
+        convertBtn.setOnAction(e -> handleConvertStorage(storageLabel, convertBtn));
+        updateStorageInfo(storageLabel, convertBtn);
+
+        storageBox.getChildren().addAll(storageLabel, convertBtn);
+
+
+        // --- SEKTION 4: Om Applikationen ---
         VBox aboutBox = createSection("Om Systemet");
 
         aboutBox.getChildren().addAll(
@@ -94,7 +113,7 @@ public class SettingsView extends BaseView {
         );
 
 
-        rootLayout.getChildren().addAll(securityBox, appearanceBox, aboutBox);
+        rootLayout.getChildren().addAll(securityBox, appearanceBox, storageBox, aboutBox);
     }
 
     private void updateToggleText(ToggleButton btn, FontIcon icon, boolean isDark) {
@@ -107,6 +126,22 @@ public class SettingsView extends BaseView {
         }
     }
 
+    private void updateStorageInfo(Label label, Button convertBtn) {
+        boolean ndjson = DataHandler.isNdjsonStorage();
+        label.setText(ndjson ? "Format: NDJSON (en post per rad)" : "Format: JSON");
+        convertBtn.setDisable(ndjson);
+    }
+
+    private void handleConvertStorage(Label label, Button convertBtn) {
+        convertBtn.setDisable(true);
+        // Konverteringen skrivs på skrivtråden; resultatet visas när den är klar
+        DataHandler.convertToNdjsonAsync(memberRegistry::snapshot, inventory::snapshot)
+                .thenAccept(count -> Platform.runLater(() -> {
+                    updateStorageInfo(label, convertBtn);
+                    showAlert(Alert.AlertType.INFORMATION, "Lagring", count + " poster konverterades. De gamla JSON-filerna finns kvar som backup.");
+                }));
+    }
+
     private VBox createSection(String title) {
         VBox box = new VBox(10);
         // ÄNDRING: Använder CSS-klass istället för hårdkodad style
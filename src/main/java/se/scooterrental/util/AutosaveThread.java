@@ -4,9 +4,14 @@ import se.scooterrental.service.Inventory;
 import se.scooterrental.service.MemberRegistry;
 import se.scooterrental.service.RentalService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Separata tråden för Autosave (VG-krav).
  * Sparar data till JSON med jämna mellanrum i bakgrunden.
+ * Samlingar vars version inte ändrats sedan förra sparningen hoppas över.
  */
 public class AutosaveThread extends Thread {
 
@@ -58,9 +63,18 @@ public class AutosaveThread extends Thread {
 
     private void performAutosave() {
         if (memberRegistry != null && inventory != null && rentalService != null) {
-            memberRegistry.saveData();
-            inventory.saveData();
-            rentalService.saveData();
+            // Varje tjänst sparar en oföränderlig ögonblicksbild, och bara om versionen ändrats.
+            // Sparningarna köas samtidigt och väntas in här, på autosave-tråden.
+            List<CompletableFuture<Boolean>> saves = new ArrayList<>();
+            if (memberRegistry.hasUnsavedChanges()) saves.add(memberRegistry.saveDataAsync());
+            if (inventory.hasUnsavedChanges()) saves.add(inventory.saveDataAsync());
+            if (rentalService.hasUnsavedChanges()) saves.add(rentalService.saveDataAsync());
+            boolean saved = false;
+            for (CompletableFuture<Boolean> save : saves) {
+                saved |= save.join();
+            }
+            if (!saved) return;
+
             System.out.println(">>> Autosave utfört i bakgrunden.");
 
             // NYTT: Kör callbacken om den finns (signalerar till MainApp)
@@ -69,4 +83,4 @@ public class AutosaveThread extends Thread {
             }
         }
     }
-}
\ No newline at end of file
+}
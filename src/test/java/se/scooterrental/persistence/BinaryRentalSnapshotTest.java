@@ -0,0 +1,149 @@
+package se.scooterrental.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.StandardPricePolicy;
+import se.scooterrental.model.StudentPricePolicy;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryRentalSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private BinaryRentalSnapshot snapshot;
+
+    private static List<Rental> sample() {
+        List<Rental> rentals = new ArrayList<>();
+        rentals.add(new Rental("r1", "m1", "i1", new StandardPricePolicy(), 1_700_000_000L, 1_700_003_600L, false, 150.5));
+        rentals.add(new Rental("r2", "m1", "i2", new StudentPricePolicy(), 1_700_010_000L, Rental.NO_TIME, true, 0.0));
+        rentals.add(new Rental(null, null, "i1", null, 1_700_020_000L, Rental.NO_TIME, true, 0.0));
+        Rental legacy = new Rental("r4", "m2", "i3", new StandardPricePolicy(), Rental.NO_TIME, Rental.NO_TIME, false, 80.0);
+        legacy.keepUnparsedTimes("igår kväll", "2024-13-01 25:00");
+        rentals.add(legacy);
+        return rentals;
+    }
+
+    private static String describe(Rental rental) {
+        String policy = rental.getPricePolicy() == null ? "-" : rental.getPricePolicy().getClass().getSimpleName();
+        return String.join("|", String.valueOf(rental.getId()), String.valueOf(rental.getMemberId()),
+                String.valueOf(rental.getItemId()), policy, String.valueOf(rental.getStartEpochSecond()),
+                String.valueOf(rental.getEndEpochSecond()), String.valueOf(rental.isActive()),
+                String.valueOf(rental.getTotalCost()), String.valueOf(rental.getUnparsedStartTime()),
+                String.valueOf(rental.getUnparsedEndTime()));
+    }
+
+    private static List<String> describe(List<Rental> rentals) {
+        List<String> lines = new ArrayList<>();
+        for (Rental rental : rentals) lines.add(describe(rental));
+        return lines;
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0x01);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("rentals.snapshot");
+        snapshot = new BinaryRentalSnapshot(file);
+    }
+
+    @Test
+    void roundTripKeepsEveryField() {
+        List<Rental> rentals = sample();
+
+        assertTrue(snapshot.write(rentals, 4711L));
+        RentalCheckpoint.Snapshot read = snapshot.read();
+
+        assertNotNull(read);
+        assertEquals(4711L, read.logOffset);
+        assertEquals(describe(rentals), describe(read.rentals));
+        assertEquals("igår kväll", read.rentals.get(3).getStartTime());
+        assertInstanceOf(StudentPricePolicy.class, read.rentals.get(1).getPricePolicy());
+        assertFalse(Files.exists(dir.resolve("rentals.snapshot.tmp")));
+    }
+
+    @Test
+    void emptySnapshotRoundTrips() {
+        assertTrue(snapshot.write(List.of(), 0L));
+
+        RentalCheckpoint.Snapshot read = snapshot.read();
+
+        assertNotNull(read);
+        assertTrue(read.rentals.isEmpty());
+    }
+
+    @Test
+    void rewriteOffsetLeavesTheChecksumValid() {
+        assertTrue(snapshot.write(sample(), 10L));
+
+        assertTrue(snapshot.rewriteOffset(99_999L));
+        RentalCheckpoint.Snapshot read = snapshot.read();
+
+        assertNotNull(read);
+        assertEquals(99_999L, read.logOffset);
+        assertEquals(describe(sample()), describe(read.rentals));
+    }
+
+    @Test
+    void corruptedBodyIsRejected() throws IOException {
+        assertTrue(snapshot.write(sample(), 10L));
+
+        flipByte(Files.size(file) - 3);
+
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    void corruptedChecksumIsRejected() throws IOException {
+        assertTrue(snapshot.write(sample(), 10L));
+
+        flipByte(16);
+
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    void unknownMagicOrShortFileIsRejected() throws IOException {
+        assertTrue(snapshot.write(sample(), 10L));
+        flipByte(0);
+        assertNull(snapshot.read());
+
+        Files.write(file, new byte[] { 'R', 'S' });
+        assertNull(snapshot.read());
+    }
+
+    @Test
+    void missingFileReadsAsNullAndDeleteRemovesIt() {
+        assertNull(snapshot.read());
+        assertTrue(snapshot.rewriteOffset(5L));
+        assertFalse(snapshot.exists());
+
+        assertTrue(snapshot.write(sample(), 1L));
+        assertTrue(snapshot.exists());
+        assertTrue(snapshot.delete());
+        assertFalse(snapshot.exists());
+    }
+}
@@ -0,0 +1,183 @@
+package se.scooterrental.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.StandardPricePolicy;
+import se.scooterrental.model.StudentPricePolicy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RentalJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private RentalJournal journal;
+
+    private static Rental started(String id) {
+        return new Rental(id, "m" + id, "i" + id, new StandardPricePolicy(), 1_700_000_000L, Rental.NO_TIME, true, 0.0);
+    }
+
+    private static Rental ended(String id, double cost) {
+        return new Rental(id, "m" + id, "i" + id, new StandardPricePolicy(), 1_700_000_000L, 1_700_003_600L, false, cost);
+    }
+
+    private static List<Rental> replay(RentalJournal journal, List<Rental> base, long fromOffset) {
+        List<Rental> rentals = new ArrayList<>(base);
+        journal.replay(rentals, fromOffset);
+        return rentals;
+    }
+
+    private static List<String> summary(List<Rental> rentals) {
+        List<String> lines = new ArrayList<>();
+        for (Rental rental : rentals) {
+            lines.add(rental.getId() + ":" + rental.isActive() + ":" + rental.getTotalCost());
+        }
+        return lines;
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Samma Gson som i produktionen, så att uppspelningen går via de riktiga adaptrarna
+        journal = new RentalJournal(dir.resolve("rentals.log"), DataHandler.compactGson());
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void eventsRoundTripThroughTheProductionFormat() {
+        Rental student = new Rental("r1", "m1", "i1", new StudentPricePolicy(), 1_700_000_000L, 1_700_007_200L, false, 99.5);
+        Rental noPolicy = new Rental("r2", "m2", "i2", null, 1_700_000_060L, Rental.NO_TIME, true, 0.0);
+        Rental legacy = new Rental("r3", "m3", "i3", new StandardPricePolicy(), Rental.NO_TIME, Rental.NO_TIME, false, 10.0);
+        legacy.keepUnparsedTimes("igår kväll", "");
+        journal.append(RentalJournal.END, student);
+        journal.append(RentalJournal.START, noPolicy);
+        journal.append(RentalJournal.END, legacy);
+
+        List<Rental> rentals = replay(journal, List.of(), 0);
+
+        assertEquals(3, rentals.size());
+        assertInstanceOf(StudentPricePolicy.class, rentals.get(0).getPricePolicy());
+        assertEquals(1_700_000_000L, rentals.get(0).getStartEpochSecond());
+        assertEquals(1_700_007_200L, rentals.get(0).getEndEpochSecond());
+        assertEquals(99.5, rentals.get(0).getTotalCost());
+        assertNull(rentals.get(1).getPricePolicy());
+        assertEquals(Rental.NO_TIME, rentals.get(1).getEndEpochSecond());
+        assertEquals("igår kväll", rentals.get(2).getUnparsedStartTime());
+        assertEquals(Rental.NO_TIME, rentals.get(2).getStartEpochSecond());
+    }
+
+    @Test
+    void appendsAfterCloseReopenTheLog() {
+        journal.append(RentalJournal.START, started("r1"));
+        journal.close();
+        journal.append(RentalJournal.START, started("r2"));
+
+        assertEquals(List.of("r1:true:0.0", "r2:true:0.0"), summary(replay(journal, List.of(), 0)));
+    }
+
+    @Test
+    void missingLogReplaysNothing() {
+        List<Rental> rentals = new ArrayList<>();
+
+        assertEquals(0, journal.replay(rentals, 0));
+        assertTrue(rentals.isEmpty());
+        assertEquals(0L, journal.length());
+    }
+
+    @Test
+    void startAddsAndEndReplacesInPlace() {
+        journal.append(RentalJournal.START, started("r1"));
+        journal.append(RentalJournal.START, started("r2"));
+        journal.append(RentalJournal.END, ended("r1", 150.0));
+
+        List<Rental> rentals = replay(journal, List.of(), 0);
+
+        assertEquals(List.of("r1:false:150.0", "r2:true:0.0"), summary(rentals));
+    }
+
+    @Test
+    void replayIsIdempotentOverAlreadyLoadedRentals() {
+        journal.append(RentalJournal.START, started("r1"));
+        journal.append(RentalJournal.END, ended("r1", 90.0));
+        journal.append(RentalJournal.START, started("r2"));
+
+        List<Rental> once = replay(journal, List.of(), 0);
+        List<Rental> twice = replay(journal, once, 0);
+
+        assertEquals(summary(once), summary(twice));
+        // En START för ett ID som redan finns får inte återaktivera en avslutad uthyrning
+        journal.append(RentalJournal.START, started("r1"));
+        assertEquals(List.of("r1:false:90.0", "r2:true:0.0"), summary(replay(journal, once, 0)));
+    }
+
+    @Test
+    void endWithoutStartIsAppended() {
+        journal.append(RentalJournal.END, ended("r9", 40.0));
+
+        List<Rental> rentals = replay(journal, List.of(started("r1")), 0);
+
+        assertEquals(List.of("r1:true:0.0", "r9:false:40.0"), summary(rentals));
+    }
+
+    @Test
+    void replayStartsAtTheGivenOffset() {
+        journal.append(RentalJournal.START, started("r1"));
+        long offset = journal.length();
+        journal.append(RentalJournal.START, started("r2"));
+
+        List<Rental> rentals = new ArrayList<>();
+        assertEquals(1, journal.replay(rentals, offset));
+        assertEquals(List.of("r2:true:0.0"), summary(rentals));
+
+        // En offset bortom slutet betyder att loggen bytts ut; då spelas allt upp
+        rentals.clear();
+        assertEquals(2, journal.replay(rentals, journal.length() + 100));
+    }
+
+    @Test
+    void brokenLinesAreSkipped() throws IOException {
+        journal.append(RentalJournal.START, started("r1"));
+        Files.writeString(dir.resolve("rentals.log"), "inte json\n\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        journal.append(RentalJournal.START, started("r2"));
+        Files.writeString(dir.resolve("rentals.log"), "{\"event\":\"END\",\"rental\":{\"id\":\"r", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<Rental> rentals = new ArrayList<>();
+
+        assertEquals(2, journal.replay(rentals, 0));
+        assertEquals(List.of("r1:true:0.0", "r2:true:0.0"), summary(rentals));
+    }
+
+    @Test
+    void compactKeepsOnlyTheTail() throws IOException {
+        journal.append(RentalJournal.START, started("r1"));
+        long offset = journal.length();
+        journal.append(RentalJournal.START, started("r2"));
+        journal.append(RentalJournal.END, ended("r2", 75.0));
+        long tail = journal.length() - offset;
+
+        assertTrue(journal.compact(offset));
+
+        assertEquals(tail, journal.length());
+        assertFalse(Files.exists(dir.resolve("rentals.log.tmp")));
+        assertEquals(List.of("r2:false:75.0"), summary(replay(journal, List.of(), 0)));
+    }
+}
@@ -0,0 +1,75 @@
+package se.scooterrental.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class UnitOfWorkRecoveryTest {
+
+    @TempDir
+    Path dir;
+
+    private void write(String file, String content) throws IOException {
+        Files.writeString(dir.resolve(file), content, StandardCharsets.UTF_8);
+    }
+
+    private String read(String file) throws IOException {
+        return Files.readString(dir.resolve(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void crashBeforeTheMarkerRollsBack() throws IOException {
+        write("members.json", "gamla medlemmar");
+        write("members.json.tmp", "nya medlemmar");
+        write("items.ndjson", "gamla items");
+        write("items.ndjson.tmp", "nya items");
+
+        DataHandler.recoverTransaction(dir);
+
+        assertEquals("gamla medlemmar", read("members.json"));
+        assertEquals("gamla items", read("items.ndjson"));
+        assertFalse(Files.exists(dir.resolve("members.json.tmp")));
+        assertFalse(Files.exists(dir.resolve("items.ndjson.tmp")));
+    }
+
+    @Test
+    void crashAfterTheMarkerRollsForward() throws IOException {
+        write("members.json", "gamla medlemmar");
+        write("members.json.tmp", "nya medlemmar");
+        write("items.ndjson", "gamla items");
+        write("items.ndjson.tmp", "nya items");
+        Files.write(dir.resolve("transaction.commit"), List.of("members.json", "items.ndjson"), StandardCharsets.UTF_8);
+
+        DataHandler.recoverTransaction(dir);
+
+        assertEquals("nya medlemmar", read("members.json"));
+        assertEquals("nya items", read("items.ndjson"));
+        assertFalse(Files.exists(dir.resolve("members.json.tmp")));
+        assertFalse(Files.exists(dir.resolve("items.ndjson.tmp")));
+        assertFalse(Files.exists(dir.resolve("transaction.commit")));
+    }
+
+    @Test
+    void crashHalfwayThroughTheSwapFinishesTheRest() throws IOException {
+        // Medlemsfilen hann bytas in innan kraschen, itemfilen inte
+        write("members.json", "nya medlemmar");
+        write("items.json", "gamla items");
+        write("items.json.tmp", "nya items");
+        Files.write(dir.resolve("transaction.commit"), List.of("members.json", "items.json"), StandardCharsets.UTF_8);
+
+        DataHandler.recoverTransaction(dir);
+
+        assertEquals("nya medlemmar", read("members.json"));
+        assertEquals("nya items", read("items.json"));
+        assertFalse(Files.exists(dir.resolve("items.json.tmp")));
+        assertFalse(Files.exists(dir.resolve("transaction.commit")));
+    }
+}
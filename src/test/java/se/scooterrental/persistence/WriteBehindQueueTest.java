@@ -0,0 +1,95 @@
+package se.scooterrental.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+
+    @Test
+    void burstToOneFileBecomesOneWriteOfTheLatestValue() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(100);
+        List<String> written = new ArrayList<>();
+
+        CompletableFuture<Boolean> first = queue.submit("a.json", () -> written.add("v1"));
+        CompletableFuture<Boolean> second = queue.submit("a.json", () -> written.add("v2"));
+        CompletableFuture<Boolean> third = queue.submit("a.json", () -> written.add("v3"));
+
+        assertSame(first, second);
+        assertSame(first, third);
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("v3"), written);
+    }
+
+    @Test
+    void differentFilesAreWrittenSeparately() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(50);
+        AtomicInteger members = new AtomicInteger();
+        AtomicInteger items = new AtomicInteger();
+
+        CompletableFuture<Boolean> a = queue.submit("members.json", () -> members.incrementAndGet() > 0);
+        CompletableFuture<Boolean> b = queue.submit("items.json", () -> items.incrementAndGet() > 0);
+        queue.submit("members.json", () -> members.incrementAndGet() > 0);
+
+        assertTrue(a.get(5, TimeUnit.SECONDS));
+        assertTrue(b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, members.get());
+        assertEquals(1, items.get());
+    }
+
+    @Test
+    void submitAfterAWriteSchedulesANewOne() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(20);
+        AtomicInteger writes = new AtomicInteger();
+
+        CompletableFuture<Boolean> first = queue.submit("a.json", () -> writes.incrementAndGet() > 0);
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> second = queue.submit("a.json", () -> writes.incrementAndGet() > 0);
+
+        assertNotSame(first, second);
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    void flushWritesPendingFilesWithoutWaitingForTheDelay() {
+        // Fördröjningen är längre än testet; bara flush kan ha skrivit
+        WriteBehindQueue queue = new WriteBehindQueue(60_000);
+        List<String> written = new ArrayList<>();
+
+        CompletableFuture<Boolean> a = queue.submit("a.json", () -> written.add("a"));
+        CompletableFuture<Boolean> b = queue.submit("b.json", () -> written.add("b"));
+        queue.flush();
+
+        assertTrue(a.isDone() && a.join());
+        assertTrue(b.isDone() && b.join());
+        assertEquals(2, written.size());
+
+        // Den schemalagda skrivningen hittar inget kvar att göra
+        queue.flush();
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    void failedOrThrowingWriteCompletesWithFalse() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(10);
+
+        CompletableFuture<Boolean> failed = queue.submit("a.json", () -> false);
+        CompletableFuture<Boolean> thrown = queue.submit("b.json", () -> {
+            throw new IllegalStateException("disk full");
+        });
+
+        assertFalse(failed.get(5, TimeUnit.SECONDS));
+        assertFalse(thrown.get(5, TimeUnit.SECONDS));
+    }
+}
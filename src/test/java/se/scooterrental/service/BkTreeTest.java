@@ -0,0 +1,87 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BkTreeTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static Map<String, Integer> search(BkTree<String> tree, String query, int maxDistance) {
+        Map<String, Integer> hits = new HashMap<>();
+        assertTrue(tree.search(query, maxDistance, System.nanoTime() + 1_000_000_000L, hits::put));
+        return hits;
+    }
+
+    @Test
+    void distanceCountsInsertionsDeletionsAndSubstitutions() {
+        assertEquals(0, BkTree.distance("anna", "anna"));
+        assertEquals(1, BkTree.distance("anna", "ana"));
+        assertEquals(1, BkTree.distance("anna", "annas"));
+        assertEquals(1, BkTree.distance("anna", "anka"));
+        assertEquals(2, BkTree.distance("johansson", "johanson1"));
+        assertEquals(3, BkTree.distance("kitten", "sitting"));
+        assertEquals(4, BkTree.distance("", "lind"));
+        assertEquals(BkTree.distance("berg", "borg"), BkTree.distance("borg", "berg"));
+    }
+
+    @Test
+    void searchFindsEveryKeyWithinTheDistance() {
+        BkTree<String> tree = new BkTree<>();
+        for (String name : new String[] { "andersson", "anderson", "andersen", "svensson", "svenson", "lind", "linde", "lund" }) {
+            tree.add(name, name);
+        }
+
+        assertEquals(Map.of("andersson", 1, "anderson", 0, "andersen", 1), search(tree, "anderson", 1));
+        assertEquals(Map.of("lind", 0, "linde", 1, "lund", 1), search(tree, "lind", 1));
+        assertEquals(Map.of("svensson", 2, "svenson", 1), search(tree, "svenso", 2));
+        assertTrue(search(tree, "karlsson", 1).isEmpty());
+    }
+
+    @Test
+    void keysCanHoldSeveralValuesAndValuesCanBeRemoved() {
+        BkTree<String> tree = new BkTree<>();
+        tree.add("nilsson", "member-1");
+        tree.add("nilsson", "member-2");
+        tree.add("olsson", "member-3");
+        tree.remove("nilsson", "member-1");
+
+        assertEquals(Map.of("member-2", 1), search(tree, "nilson", 1));
+        tree.remove("nilsson", "member-2");
+        assertTrue(search(tree, "nilsson", 0).isEmpty());
+        assertEquals(Map.of("member-3", 0), search(tree, "olsson", 0));
+    }
+
+    @Test
+    void emptyTreeCompletesWithoutHits() {
+        BkTree<String> tree = new BkTree<>();
+        Map<String, Integer> hits = new HashMap<>();
+
+        assertTrue(tree.search("lind", 2, NO_DEADLINE, hits::put));
+        assertTrue(hits.isEmpty());
+    }
+
+    @Test
+    void searchStopsAndReportsIncompleteWhenTheDeadlineHasPassed() {
+        BkTree<String> tree = new BkTree<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = Integer.toString(i * 7919, 36);
+            tree.add(key, key);
+        }
+        Map<String, Integer> hits = new HashMap<>();
+
+        // Stort maxavstånd så att hela trädet besöks om ingen deadline stoppar sökningen
+        assertFalse(tree.search("abc", 10, System.nanoTime() - 1, hits::put));
+        assertTrue(hits.size() < 1000);
+
+        hits.clear();
+        assertTrue(tree.search("abc", 10, NO_DEADLINE, hits::put));
+        assertEquals(1000, hits.size());
+    }
+}
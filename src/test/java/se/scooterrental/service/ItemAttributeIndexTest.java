@@ -0,0 +1,156 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Scooter;
+import se.scooterrental.model.Sled;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemAttributeIndexTest {
+
+    private ItemAttributeIndex index;
+    private List<Item> items;
+
+    private static Scooter scooter(String id, String model, int cc, boolean electricStart) {
+        return new Scooter(id, model, 500.0, "ABC" + id, cc, electricStart);
+    }
+
+    private static Sled sled(String id, String model, int maxWeightKg) {
+        return new Sled(id, model, 200.0, "Släde", maxWeightKg);
+    }
+
+    private void add(Item item) {
+        index.index(items.size(), item);
+        items.add(item);
+    }
+
+    private BitSet positionsOf(String... ids) {
+        BitSet bits = new BitSet();
+        for (String id : ids) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getItemId().equals(id)) bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    // Facit: samma filter tillämpat item för item
+    private BitSet bruteForce(Inventory.ItemFilter filter) {
+        BitSet bits = new BitSet();
+        for (int i = 0; i < items.size(); i++) {
+            if (filter.matches(items.get(i))) bits.set(i);
+        }
+        return bits;
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new ItemAttributeIndex();
+        items = new ArrayList<>();
+        add(scooter("s99", "Lynx", 99, false));
+        add(scooter("s100", "Lynx", 100, true));
+        add(scooter("s199", "Rave", 199, false));
+        add(scooter("s200", "Rave", 200, true));
+        add(scooter("s250", "Summit", 250, true));
+        add(scooter("s600", "Summit", 600, false));
+        add(sled("k24", "Pulka", 24));
+        add(sled("k25", "Pulka", 25));
+        add(sled("k49", "Kälke", 49));
+        add(sled("k50", "Kälke", 50));
+        add(sled("k75", "Kälke", 75));
+    }
+
+    @Test
+    void displacementRangeIsInclusiveAtBandEdges() {
+        assertEquals(positionsOf("s100", "s199"), index.search(new Inventory.ItemFilter().displacement(100, 199)));
+        assertEquals(positionsOf("s199", "s200", "s250"), index.search(new Inventory.ItemFilter().displacement(150, 250)));
+        assertEquals(positionsOf("s99"), index.search(new Inventory.ItemFilter().displacement(99, 99)));
+        assertEquals(positionsOf("s200"), index.search(new Inventory.ItemFilter().displacement(200, 200)));
+        assertTrue(index.search(new Inventory.ItemFilter().displacement(601, 1000)).isEmpty());
+        assertTrue(index.search(new Inventory.ItemFilter().displacement(300, 200)).isEmpty());
+    }
+
+    @Test
+    void openLowerBoundReachesTheLowestBand() {
+        Inventory.ItemFilter filter = new Inventory.ItemFilter().displacement(Integer.MIN_VALUE, 150);
+
+        assertEquals(positionsOf("s99", "s100"), index.search(filter));
+        assertEquals(positionsOf("s250", "s600"),
+                index.search(new Inventory.ItemFilter().displacement(201, Integer.MAX_VALUE - 1)));
+    }
+
+    @Test
+    void maxWeightRangeIsInclusiveAtBandEdges() {
+        assertEquals(positionsOf("k25", "k49"), index.search(new Inventory.ItemFilter().maxWeight(25, 49)));
+        assertEquals(positionsOf("k49", "k50"), index.search(new Inventory.ItemFilter().maxWeight(30, 60)));
+        assertEquals(positionsOf("k24"), index.search(new Inventory.ItemFilter().maxWeight(0, 24)));
+        assertEquals(positionsOf("k75"), index.search(new Inventory.ItemFilter().maxWeight(75, 75)));
+    }
+
+    @Test
+    void attributesAreAndedAndModelsOred() {
+        Inventory.ItemFilter filter = new Inventory.ItemFilter()
+                .electricStart(true).displacement(100, 300).model("lynx").model("SUMMIT");
+
+        assertEquals(positionsOf("s100", "s250"), index.search(filter));
+        assertEquals(positionsOf("s99", "s199", "s600"), index.search(new Inventory.ItemFilter().electricStart(false)));
+        assertEquals(positionsOf("k24", "k25"), index.search(new Inventory.ItemFilter().type("Sled").model("pulka")));
+    }
+
+    @Test
+    void matchesTheItemByItemFilterOnRandomRanges() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int a = random.nextInt(700) - 50;
+            int b = random.nextInt(700) - 50;
+            Inventory.ItemFilter displacement = new Inventory.ItemFilter().displacement(Math.min(a, b), Math.max(a, b));
+            assertEquals(bruteForce(displacement), index.search(displacement), "cc " + a + ".." + b);
+
+            int c = random.nextInt(100) - 10;
+            int d = random.nextInt(100) - 10;
+            Inventory.ItemFilter weight = new Inventory.ItemFilter().maxWeight(Math.min(c, d), Math.max(c, d));
+            assertEquals(bruteForce(weight), index.search(weight), "kg " + c + ".." + d);
+        }
+    }
+
+    @Test
+    void reindexClearsTheOldBandAndType() {
+        int position = positionsOf("s199").nextSetBit(0);
+        Scooter changed = scooter("s199", "Rave", 450, false);
+        items.set(position, changed);
+        index.index(position, changed);
+
+        assertEquals(positionsOf("s100"), index.search(new Inventory.ItemFilter().displacement(100, 199)));
+        assertEquals(positionsOf("s199", "s600"), index.search(new Inventory.ItemFilter().displacement(400, 700)));
+
+        // Samma position blir en släde: scooterbanden och elstartsbiten ska försvinna helt
+        Sled replaced = sled("s199", "Pulka", 30);
+        items.set(position, replaced);
+        index.index(position, replaced);
+
+        assertEquals(positionsOf("s600"), index.search(new Inventory.ItemFilter().displacement(400, 700)));
+        assertEquals(positionsOf("k25", "s199", "k49"), index.search(new Inventory.ItemFilter().maxWeight(25, 49)));
+        assertEquals(positionsOf("s99", "s600"), index.search(new Inventory.ItemFilter().electricStart(false)));
+        assertEquals(positionsOf("k24", "k25", "s199"), index.search(new Inventory.ItemFilter().model("pulka")));
+    }
+
+    @Test
+    void availabilityFollowsReindex() {
+        Item item = items.get(0);
+        item.setAvailable(false);
+        index.index(0, item);
+
+        BitSet expected = new BitSet();
+        expected.set(1, items.size());
+        assertEquals(expected, index.available());
+        assertEquals(expected, index.search(new Inventory.ItemFilter().onlyAvailable(true)));
+    }
+}
@@ -0,0 +1,123 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.scooterrental.model.Member;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberSearchIndexTest {
+
+    private MemberSearchIndex index;
+
+    private static Member member(String id, String first, String last, Member.MemberStatus status) {
+        return new Member(id, first, last, "0701234567", first.toLowerCase() + "@example.com", status);
+    }
+
+    private Member add(String id, String first, String last, Member.MemberStatus status) {
+        Member member = member(id, first, last, status);
+        index.index(member);
+        return member;
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new MemberSearchIndex();
+    }
+
+    @Test
+    void ranksExactIdThenExactNameThenPrefixesThenSubstrings() {
+        Member substring = add("1001", "Marianna", "Berg", Member.MemberStatus.STANDARD);
+        Member namePrefix = add("1002", "Annabel", "Sjö", Member.MemberStatus.STANDARD);
+        Member idPrefix = add("anna7", "Olle", "Ek", Member.MemberStatus.STANDARD);
+        Member exactName = add("1003", "Anna", "Holm", Member.MemberStatus.STANDARD);
+        Member exactId = add("anna", "Per", "Lund", Member.MemberStatus.STANDARD);
+
+        MemberRegistry.SearchPage page = index.search("anna", null, 10);
+
+        assertEquals(List.of(exactId, exactName, idPrefix, namePrefix, substring), page.getMembers());
+        assertEquals(5, page.getTotalMatches());
+    }
+
+    @Test
+    void equallyRankedHitsKeepRegistryOrder() {
+        Member first = add("1001", "Eva", "Sund", Member.MemberStatus.STANDARD);
+        Member second = add("1002", "Eva", "Ström", Member.MemberStatus.STANDARD);
+        Member third = add("1003", "Eva", "Nord", Member.MemberStatus.STANDARD);
+
+        assertEquals(List.of(first, second, third), index.search("eva", null, 10).getMembers());
+    }
+
+    @Test
+    void pageIsLimitedButTotalCountsAllHits() {
+        for (int i = 0; i < 30; i++) {
+            add(String.valueOf(2000 + i), "Lisa", "Nilsson" + i, Member.MemberStatus.STANDARD);
+        }
+        Member exact = add("3000", "Lisa", "Nilsson", Member.MemberStatus.STANDARD);
+
+        MemberRegistry.SearchPage page = index.search("lisa nilsson", null, 5);
+
+        assertEquals(5, page.getMembers().size());
+        assertEquals(31, page.getTotalMatches());
+        // Den exakta namnträffen ligger sist i registret men först på sidan
+        assertEquals(exact, page.getMembers().get(0));
+    }
+
+    @Test
+    void statusFilterIsAppliedBeforeRanking() {
+        add("1001", "Maja", "Lind", Member.MemberStatus.STANDARD);
+        Member student = add("1002", "Maja", "Ask", Member.MemberStatus.STUDENT);
+
+        MemberRegistry.SearchPage page = index.search("maja", Member.MemberStatus.STUDENT, 10);
+
+        assertEquals(List.of(student), page.getMembers());
+        assertEquals(1, page.getTotalMatches());
+        assertEquals(0, index.search("maja", Member.MemberStatus.PREMIUM, 10).getTotalMatches());
+    }
+
+    @Test
+    void emptyQueryReturnsEveryoneInRegistryOrder() {
+        Member a = add("1001", "Ali", "Berg", Member.MemberStatus.STANDARD);
+        Member b = add("1002", "Bo", "Dal", Member.MemberStatus.PREMIUM);
+
+        assertEquals(List.of(a, b), index.search("", null, 10).getMembers());
+        assertEquals(List.of(b), index.search("", Member.MemberStatus.PREMIUM, 10).getMembers());
+    }
+
+    @Test
+    void reindexFollowsRenameAndStatusChange() {
+        Member member = add("1001", "Sven", "Ek", Member.MemberStatus.STANDARD);
+        member.setFirstName("Stina");
+        member.setStatus(Member.MemberStatus.PREMIUM);
+        index.index(member);
+
+        assertEquals(0, index.search("sven", null, 10).getTotalMatches());
+        assertEquals(List.of(member), index.search("stina", Member.MemberStatus.PREMIUM, 10).getMembers());
+        assertEquals(0, index.search("", Member.MemberStatus.STANDARD, 10).getTotalMatches());
+    }
+
+    @Test
+    void removedMembersAreNotFound() {
+        Member removed = add("1001", "Nils", "Ek", Member.MemberStatus.STANDARD);
+        Member kept = add("1002", "Nils", "Alm", Member.MemberStatus.STANDARD);
+        index.remove(removed);
+
+        assertEquals(List.of(kept), index.search("nils", null, 10).getMembers());
+        assertEquals(List.of(kept), index.search("", null, 10).getMembers());
+    }
+
+    @Test
+    void matchesUsesTheSameRulesAsTheIndex() {
+        Member member = member("1001", "Karin", "Ek", Member.MemberStatus.STUDENT);
+
+        assertTrue(MemberSearchIndex.matches(member, "rin e", null));
+        assertTrue(MemberSearchIndex.matches(member, "100", Member.MemberStatus.STUDENT));
+        assertTrue(MemberSearchIndex.matches(member, "", null));
+        assertFalse(MemberSearchIndex.matches(member, "karin", Member.MemberStatus.PREMIUM));
+        assertFalse(MemberSearchIndex.matches(member, "ekk", null));
+    }
+}
@@ -0,0 +1,115 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NgramIndexTest {
+
+    private static BitSet bits(int... positions) {
+        BitSet bits = new BitSet();
+        for (int position : positions) bits.set(position);
+        return bits;
+    }
+
+    @Test
+    void shortQueriesAreAnsweredFromTheGrams() {
+        NgramIndex index = new NgramIndex();
+        index.index(0, new String[] { "lynx 600", "abc123" });
+        index.index(1, new String[] { "ski-doo", "xyz789" });
+
+        assertEquals(bits(0), index.search("n"));
+        assertEquals(bits(0), index.search("600"));
+        assertEquals(bits(1), index.search("-d"));
+        assertTrue(index.search("q").isEmpty());
+    }
+
+    @Test
+    void longQueriesAreCheckedAgainstTheText() {
+        NgramIndex index = new NgramIndex();
+        // Alla trigram i "abcab" finns i båda, men bara den första innehåller strängen i följd
+        index.index(0, new String[] { "xabcabx" });
+        index.index(1, new String[] { "abc cab bca" });
+
+        assertEquals(bits(0), index.search("abcab"));
+        assertEquals(bits(0, 1), index.search("abc"));
+    }
+
+    @Test
+    void queryMatchesAnyOfThePositionsTexts() {
+        NgramIndex index = new NgramIndex();
+        index.index(0, new String[] { "polaris", "pol-001" });
+
+        assertEquals(bits(0), index.search("polaris"));
+        assertEquals(bits(0), index.search("pol-001"));
+        assertTrue(index.search("polaris pol").isEmpty());
+    }
+
+    @Test
+    void reindexReplacesTheOldTexts() {
+        NgramIndex index = new NgramIndex();
+        index.index(0, new String[] { "yamaha" });
+        index.index(0, new String[] { "arctic cat" });
+
+        assertTrue(index.search("yamaha").isEmpty());
+        assertTrue(index.search("ya").isEmpty());
+        assertEquals(bits(0), index.search("arctic"));
+    }
+
+    @Test
+    void removedPositionsAreNotFound() {
+        NgramIndex index = new NgramIndex();
+        index.index(0, new String[] { "lynx" });
+        index.index(1, new String[] { "lynx rave" });
+        index.remove(0);
+
+        assertEquals(bits(1), index.search("lynx"));
+        assertNull(index.textsAt(0));
+        index.remove(5); // Okänd position ignoreras
+    }
+
+    @Test
+    void resultIsACopyTheCallerMayChange() {
+        NgramIndex index = new NgramIndex();
+        index.index(0, new String[] { "lynx" });
+
+        index.search("l").clear(0);
+
+        assertEquals(bits(0), index.search("l"));
+    }
+
+    @Test
+    void positionsAddedOutOfOrderStaySortedAndIntersect() {
+        NgramIndex index = new NgramIndex();
+        index.index(9, new String[] { "rave 850" });
+        index.index(2, new String[] { "rave 600" });
+        index.index(5, new String[] { "lynx 850" });
+        index.index(0, new String[] { "rave" });
+
+        assertEquals(bits(0, 2, 9), index.search("rave"));
+        assertEquals(bits(5, 9), index.search("850"));
+        assertEquals(bits(9), index.search("rave 850"));
+
+        index.remove(2);
+        index.index(9, new String[] { "lynx" });
+        assertEquals(bits(0), index.search("rave"));
+        assertEquals(bits(5, 9), index.search("lynx"));
+    }
+
+    @Test
+    void lowerIgnoresTheDefaultLocale() {
+        Locale original = Locale.getDefault();
+        try {
+            // På turkiska blir versalt I ett punktlöst ı, som aldrig matchar "i" i indexet
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+            assertEquals("ski-doo", NgramIndex.lower("SKI-DOO"));
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.Test;
+import se.scooterrental.model.Member;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhoneIndexTest {
+
+    private static Member member(String id, String phone) {
+        return new Member(id, "Test", "Person", phone, "test@example.com", Member.MemberStatus.STANDARD);
+    }
+
+    @Test
+    void normalizeKeepsOnlyDigits() {
+        assertEquals("0701234567", PhoneIndex.normalize("070-123 45 67"));
+        assertEquals("0701234567", PhoneIndex.normalize(" 0701234567 "));
+        assertEquals("", PhoneIndex.normalize(null));
+        assertEquals("", PhoneIndex.normalize(" - "));
+    }
+
+    @Test
+    void normalizeTurnsCountryCodeIntoLeadingZero() {
+        assertEquals("0701234567", PhoneIndex.normalize("+46 70-123 45 67"));
+        assertEquals("0701234567", PhoneIndex.normalize("+46701234567"));
+        assertEquals("0701234567", PhoneIndex.normalize("0046 70 123 45 67"));
+        assertEquals("0812345678", PhoneIndex.normalize("0046812345678"));
+    }
+
+    @Test
+    void normalizeDropsTheDoubledZeroAfterACountryCode() {
+        assertEquals("0701234567", PhoneIndex.normalize("+46 070-123 45 67"));
+        assertEquals("0701234567", PhoneIndex.normalize("0046 0701234567"));
+    }
+
+    @Test
+    void normalizeLeavesOtherCountriesAlone() {
+        assertEquals("4712345678", PhoneIndex.normalize("+47 12 34 56 78"));
+        assertEquals("004712345678", PhoneIndex.normalize("0047 12 34 56 78"));
+    }
+
+    @Test
+    void findMatchesAnyFormatOfTheSameNumber() {
+        PhoneIndex index = new PhoneIndex();
+        Member parent = member("1001", "+46 70-123 45 67");
+        Member child = member("1002", "070 123 45 67");
+        Member other = member("1003", "070-765 43 21");
+        index.index(parent);
+        index.index(child);
+        index.index(other);
+
+        assertEquals(List.of(parent, child), index.find("0046701234567"));
+        assertEquals(List.of(other), index.find("+46707654321"));
+        assertTrue(index.find("0700000000").isEmpty());
+    }
+
+    @Test
+    void findBySuffixMatchesTrailingDigitsUpToTheLimit() {
+        PhoneIndex index = new PhoneIndex();
+        Member a = member("1001", "070-111 45 67");
+        Member b = member("1002", "073-222 45 67");
+        Member c = member("1003", "076-333 45 67");
+        Member d = member("1004", "070-444 99 99");
+        index.index(a);
+        index.index(b);
+        index.index(c);
+        index.index(d);
+
+        assertEquals(3, index.findBySuffix("4567", 10).size());
+        assertTrue(index.findBySuffix("45 67", 10).containsAll(List.of(a, b, c)));
+        assertEquals(2, index.findBySuffix("4567", 2).size());
+        assertEquals(List.of(b), index.findBySuffix("222 45 67", 10));
+        assertEquals(List.of(d), index.findBySuffix("9999", 10));
+        assertTrue(index.findBySuffix("1234", 10).isEmpty());
+        assertTrue(index.findBySuffix("", 10).isEmpty());
+    }
+
+    @Test
+    void reindexAndRemoveFollowTheMembersNumber() {
+        PhoneIndex index = new PhoneIndex();
+        Member member = member("1001", "070-111 22 33");
+        index.index(member);
+        member.setPhone("+46 73 999 88 77");
+        index.index(member);
+
+        assertTrue(index.find("0701112233").isEmpty());
+        assertTrue(index.findBySuffix("2233", 10).isEmpty());
+        assertEquals(List.of(member), index.find("0739998877"));
+        assertEquals(List.of(member), index.findBySuffix("8877", 10));
+
+        index.remove(member);
+        assertTrue(index.find("0739998877").isEmpty());
+        assertTrue(index.findBySuffix("8877", 10).isEmpty());
+    }
+}
@@ -0,0 +1,173 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.scooterrental.model.PricePolicy;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.StandardPricePolicy;
+import se.scooterrental.model.StudentPricePolicy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RentalHistoryStoreTest {
+
+    // Drygt två segment à 4096 rader; ringen med 256 objekt varvas många gånger
+    private static final int ROWS = 10_000;
+    private static final long BASE = 1_700_000_000L;
+
+    private RentalHistoryStore store;
+    private List<Rental> added;
+
+    // Blandar vanliga, oregelbundna och saknade ID:n, policyer och tider
+    private static Rental rental(int i) {
+        String id = i % 1000 == 0 ? null : i % 97 == 0 ? "R-" + i : i % 501 == 0 ? "0" + (i + 1) : Integer.toString(i + 1);
+        String itemId = i % 53 == 0 ? null : "I" + (i % 53);
+        PricePolicy policy = i % 3 == 0 ? null : i % 3 == 1 ? new StandardPricePolicy() : new StudentPricePolicy();
+        long start = i % 777 == 0 ? Rental.NO_TIME : BASE + i * 60L;
+        Rental rental = new Rental(id, "M" + (i % 37), itemId, policy, start, start == Rental.NO_TIME ? Rental.NO_TIME : start + 3600,
+                false, i * 1.5);
+        if (start == Rental.NO_TIME) rental.keepUnparsedTimes("igår", "i dag");
+        return rental;
+    }
+
+    private static void assertSameRow(Rental expected, Rental actual, String message) {
+        assertEquals(expected.getId(), actual.getId(), message);
+        assertEquals(expected.getMemberId(), actual.getMemberId(), message);
+        assertEquals(expected.getItemId(), actual.getItemId(), message);
+        assertEquals(policyClass(expected), policyClass(actual), message);
+        assertEquals(expected.getStartEpochSecond(), actual.getStartEpochSecond(), message);
+        assertEquals(expected.getEndEpochSecond(), actual.getEndEpochSecond(), message);
+        assertEquals(expected.getUnparsedStartTime(), actual.getUnparsedStartTime(), message);
+        assertEquals(expected.getUnparsedEndTime(), actual.getUnparsedEndTime(), message);
+        assertEquals(expected.getTotalCost(), actual.getTotalCost(), message);
+    }
+
+    private static Class<?> policyClass(Rental rental) {
+        return rental.getPricePolicy() == null ? null : rental.getPricePolicy().getClass();
+    }
+
+    private static List<Rental> drain(Iterator<Rental> cursor) {
+        List<Rental> rows = new ArrayList<>();
+        cursor.forEachRemaining(rows::add);
+        return rows;
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new RentalHistoryStore();
+        added = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Rental rental = rental(i);
+            added.add(rental);
+            store.add(rental);
+        }
+    }
+
+    @Test
+    void rowsRoundTripAcrossSegmentsAndTheRecentRing() {
+        List<Rental> rows = drain(store.cursor(store.size()));
+
+        assertEquals(ROWS, rows.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertSameRow(added.get(i), rows.get(i), "rad " + i);
+        }
+        // Äldre rader återskapas ur kolumnerna, de senaste 256 är de arkiverade objekten
+        assertNotSame(added.get(ROWS - 257), rows.get(ROWS - 257));
+        assertSame(added.get(ROWS - 256), rows.get(ROWS - 256));
+        assertSame(added.get(ROWS - 1), rows.get(ROWS - 1));
+    }
+
+    @Test
+    void cursorReturnsEveryRowExactlyOnce() {
+        for (int rows : new int[] { 0, 1, 1024, 4096, 4097, ROWS }) {
+            Iterator<Rental> cursor = store.cursor(rows);
+            Set<Integer> costs = new HashSet<>();
+            int count = 0;
+            while (cursor.hasNext()) {
+                // Kostnaden är unik per rad och ger radnumret tillbaka
+                assertTrue(costs.add((int) (cursor.next().getTotalCost() / 1.5)));
+                count++;
+            }
+            assertEquals(rows, count);
+            assertEquals(rows, costs.size());
+            assertTrue(rows == 0 || costs.contains(rows - 1));
+            assertThrows(NoSuchElementException.class, cursor::next);
+        }
+    }
+
+    @Test
+    void cursorStopsWhenTheHistoryIsClearedMidway() {
+        Iterator<Rental> cursor = store.cursor(ROWS);
+        assertSameRow(added.get(0), cursor.next(), "rad 0");
+
+        store.clear();
+
+        // Resten av den redan lästa biten ges ut, sedan tar det slut
+        int remaining = drain(cursor).size();
+        assertEquals(1023, remaining);
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    void forMemberResolvesDictionaryIds() {
+        List<Rental> expected = new ArrayList<>();
+        for (Rental rental : added) {
+            if (rental.getMemberId().equals("M5")) expected.add(rental);
+        }
+
+        List<Rental> actual = store.forMember("M5");
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameRow(expected.get(i), actual.get(i), "M5 nr " + i);
+        }
+        // Item-ID:n delar ordlista med medlems-ID:n men är inga medlemmar
+        assertTrue(store.forMember("I5").isEmpty());
+        assertTrue(store.forMember("okänd").isEmpty());
+    }
+
+    @Test
+    void maxNumericIdCountsIrregularDigitIds() {
+        RentalHistoryStore small = new RentalHistoryStore();
+        assertEquals(OptionalLong.empty(), small.maxNumericId());
+
+        small.add(new Rental("7", "M1", "I1", null, BASE, BASE + 60, false, 10.0));
+        small.add(new Rental("0042", "M1", "I1", null, BASE, BASE + 60, false, 10.0));
+        small.add(new Rental("R-900", "M1", "I1", null, BASE, BASE + 60, false, 10.0));
+        small.add(new Rental(null, "M1", "I1", null, BASE, BASE + 60, false, 10.0));
+
+        assertEquals(OptionalLong.of(42), small.maxNumericId());
+        long expected = added.stream().map(Rental::getId).filter(Objects::nonNull)
+                .filter(id -> id.matches("\\d+")).mapToLong(Long::parseLong).max().orElseThrow();
+        assertEquals(OptionalLong.of(expected), store.maxNumericId());
+    }
+
+    @Test
+    void clearDropsEverythingAndTheStoreCanBeRefilled() {
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertFalse(store.cursor(ROWS).hasNext());
+        assertTrue(store.forMember("M5").isEmpty());
+        assertEquals(OptionalLong.empty(), store.maxNumericId());
+
+        Rental again = new Rental("1", "M5", "I1", new StudentPricePolicy(), BASE, BASE + 60, false, 5.0);
+        store.add(again);
+        assertEquals(1, store.size());
+        assertSameRow(again, store.forMember("M5").get(0), "efter clear");
+    }
+}
@@ -0,0 +1,115 @@
+package se.scooterrental.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.scooterrental.model.Item;
+import se.scooterrental.model.Member;
+import se.scooterrental.model.Rental;
+import se.scooterrental.model.Scooter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RentalServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final String ITEM_ID = "1";
+
+    private Inventory inventory;
+    private RentalService service;
+
+    @BeforeEach
+    void setUp() {
+        DashboardStats stats = new DashboardStats();
+        DomainEventBus eventBus = new DomainEventBus();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            members.add(new Member(String.valueOf(1001 + i), "Test", "Person", "0701234567", "", Member.MemberStatus.STANDARD));
+        }
+        MemberRegistry registry = new MemberRegistry(members, stats, eventBus);
+        inventory = new Inventory(new ArrayList<>(List.of(new Scooter(ITEM_ID, "Lynx", 300.0, "ABC123", 600, true))), stats, eventBus);
+        service = new RentalService(registry, inventory, new ArrayList<>(), stats, eventBus);
+    }
+
+    // Startar alla uppgifter samtidigt och returnerar deras resultat
+    private static <T> List<T> race(List<Callable<T>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) results.add(future.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void exactlyOneOfManyConcurrentRentalsOfTheSameItemSucceeds() throws Exception {
+        for (int round = 0; round < 25; round++) {
+            List<Callable<Boolean>> attempts = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String memberId = String.valueOf(1001 + i);
+                attempts.add(() -> service.rentItem(memberId, ITEM_ID));
+            }
+
+            long successes = race(attempts).stream().filter(ok -> ok).count();
+
+            assertEquals(1, successes, "runda " + round);
+            assertEquals(1, service.getActiveRentalCount());
+            assertFalse(inventory.findItemById(ITEM_ID).orElseThrow().isAvailable());
+            assertTrue(service.endRental(service.getActiveRentals().get(0).getId()).isPresent());
+        }
+    }
+
+    @Test
+    void concurrentCheckoutsOfTheSameRentalChargeOnce() throws Exception {
+        assertTrue(service.rentItem("1001", ITEM_ID));
+        String rentalId = service.getActiveRentals().get(0).getId();
+
+        List<Callable<Optional<Double>>> checkouts = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            checkouts.add(() -> service.endRental(rentalId));
+        }
+
+        assertEquals(1, race(checkouts).stream().filter(Optional::isPresent).count());
+        assertEquals(0, service.getActiveRentalCount());
+        assertTrue(inventory.findItemById(ITEM_ID).orElseThrow().isAvailable());
+    }
+
+    @Test
+    void staleEditDuringARentalDoesNotFreeTheItem() {
+        // Redigeringen öppnades medan itemet var ledigt, men sparas först efter utcheckningen
+        Scooter edit = new Scooter(ITEM_ID, "Lynx 600 LE", 350.0, "ABC123", 600, true);
+        assertTrue(service.rentItem("1001", ITEM_ID));
+
+        assertTrue(inventory.updateItem(edit));
+
+        Item item = inventory.findItemById(ITEM_ID).orElseThrow();
+        assertEquals("Lynx 600 LE", item.getName());
+        assertFalse(item.isAvailable());
+        assertTrue(inventory.getAvailableItems().isEmpty());
+        assertFalse(service.rentItem("1002", ITEM_ID));
+        List<Rental> active = service.getActiveRentals();
+        assertEquals(1, active.size());
+        assertEquals("1001", active.get(0).getMemberId());
+    }
+}